@@ -0,0 +1,146 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import hudson.model.Run;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.tools.ant.types.selectors.SelectorUtils;
+
+/**
+ * Archived artifacts of a completed build, listed at most once however many
+ * webhooks ask for them.
+ * <p>
+ * The artifact manager is only walked when the first webhook with an
+ * artifact filter is notified, and the walk stops after {@link #MAX_SCANNED}
+ * artifacts. Each distinct filter is then matched against the cached paths
+ * once, and at most {@link #MAX_ARTIFACTS} matches are sent.
+ */
+@SuppressWarnings("rawtypes")
+final class ArtifactIndex {
+
+	static final int MAX_SCANNED = Integer.getInteger(ArtifactIndex.class.getName() + ".maxScanned", 10000);
+
+	static final int MAX_ARTIFACTS = Integer.getInteger(ArtifactIndex.class.getName() + ".maxArtifacts", 100);
+
+	private static final String LOCATION = "archive";
+
+	private final Run run;
+
+	private final String baseUrl;
+
+	private String[] paths;
+
+	private String[] hrefs;
+
+	private boolean scanTruncated;
+
+	private final Map<String, Selection> selections = new HashMap<String, Selection>();
+
+	/**
+	 * @param baseUrl
+	 *            absolute URL of the build
+	 */
+	ArtifactIndex(Run run, String baseUrl) {
+		this.run = run;
+		this.baseUrl = baseUrl + "artifact/";
+	}
+
+	/**
+	 * Artifacts matching comma separated Ant style patterns, e.g.
+	 * {@code **}{@code /*.jar, target/*.hpi}.
+	 */
+	Selection select(String filter) {
+		Selection selection = selections.get(filter);
+		if (selection == null) {
+			selection = match(filter);
+			selections.put(filter, selection);
+		}
+		return selection;
+	}
+
+	private Selection match(String filter) {
+		scan();
+		List<String> patterns = new ArrayList<String>();
+		for (String pattern : filter.split(",")) {
+			if (pattern.trim().length() > 0) {
+				patterns.add(pattern.trim());
+			}
+		}
+		Map<String, Map<String, String>> artifacts = new LinkedHashMap<String, Map<String, String>>();
+		boolean truncated = scanTruncated;
+		for (int i = 0; i < paths.length; i++) {
+			if (!matches(patterns, paths[i])) {
+				continue;
+			}
+			if (artifacts.size() == MAX_ARTIFACTS) {
+				truncated = true;
+				break;
+			}
+			artifacts.put(paths[i], Collections.singletonMap(LOCATION, baseUrl + hrefs[i]));
+		}
+		return new Selection(Collections.unmodifiableMap(artifacts), truncated);
+	}
+
+	private static boolean matches(List<String> patterns, String path) {
+		for (String pattern : patterns) {
+			if (SelectorUtils.matchPath(pattern, path)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void scan() {
+		if (paths != null) {
+			return;
+		}
+		List artifacts = run.getArtifactsUpTo(MAX_SCANNED + 1);
+		scanTruncated = artifacts.size() > MAX_SCANNED;
+		int count = Math.min(artifacts.size(), MAX_SCANNED);
+		paths = new String[count];
+		hrefs = new String[count];
+		for (int i = 0; i < count; i++) {
+			Run.Artifact artifact = (Run.Artifact) artifacts.get(i);
+			paths[i] = artifact.relativePath;
+			hrefs[i] = artifact.getHref();
+		}
+	}
+
+	static final class Selection {
+
+		private final Map<String, Map<String, String>> artifacts;
+
+		private final boolean truncated;
+
+		Selection(Map<String, Map<String, String>> artifacts, boolean truncated) {
+			this.artifacts = artifacts;
+			this.truncated = truncated;
+		}
+
+		Map<String, Map<String, String>> getArtifacts() {
+			return artifacts;
+		}
+
+		boolean isTruncated() {
+			return truncated;
+		}
+	}
+}
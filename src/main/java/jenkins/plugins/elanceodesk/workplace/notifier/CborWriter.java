@@ -0,0 +1,237 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * {@link JsonWriter} that emits CBOR (RFC 7049) instead of JSON text, so the
+ * model writers can produce the binary format directly.
+ * <p>
+ * Objects and arrays are written with indefinite length. Like
+ * {@link JsonWriter}, names are deferred so that null values can be dropped
+ * when nulls are not serialized.
+ */
+class CborWriter extends JsonWriter {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final int MAJOR_UNSIGNED = 0;
+
+	private static final int MAJOR_NEGATIVE = 1;
+
+	private static final int MAJOR_TEXT = 3;
+
+	private static final int INDEFINITE_ARRAY = 0x9f;
+
+	private static final int INDEFINITE_MAP = 0xbf;
+
+	private static final int FALSE = 0xf4;
+
+	private static final int TRUE = 0xf5;
+
+	private static final int NULL = 0xf6;
+
+	private static final int DOUBLE = 0xfb;
+
+	private static final int BREAK = 0xff;
+
+	/**
+	 * Text writer of the superclass. Every method of {@link JsonWriter} that
+	 * writes is overridden, so nothing reaches it.
+	 */
+	private static final Writer UNUSED = new Writer() {
+		@Override
+		public void write(char[] cbuf, int off, int len) {
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+		}
+	};
+
+	private final OutputStream out;
+
+	private String deferredName;
+
+	CborWriter(OutputStream out) {
+		super(UNUSED);
+		this.out = out;
+	}
+
+	@Override
+	public JsonWriter beginArray() throws IOException {
+		writeDeferredName();
+		out.write(INDEFINITE_ARRAY);
+		return this;
+	}
+
+	@Override
+	public JsonWriter endArray() throws IOException {
+		out.write(BREAK);
+		return this;
+	}
+
+	@Override
+	public JsonWriter beginObject() throws IOException {
+		writeDeferredName();
+		out.write(INDEFINITE_MAP);
+		return this;
+	}
+
+	@Override
+	public JsonWriter endObject() throws IOException {
+		deferredName = null;
+		out.write(BREAK);
+		return this;
+	}
+
+	@Override
+	public JsonWriter name(String name) throws IOException {
+		if (name == null) {
+			throw new NullPointerException("name == null");
+		}
+		deferredName = name;
+		return this;
+	}
+
+	@Override
+	public JsonWriter value(String value) throws IOException {
+		if (value == null) {
+			return nullValue();
+		}
+		writeDeferredName();
+		writeText(value);
+		return this;
+	}
+
+	@Override
+	public JsonWriter nullValue() throws IOException {
+		if (deferredName != null) {
+			if (!getSerializeNulls()) {
+				deferredName = null;
+				return this;
+			}
+			writeDeferredName();
+		}
+		out.write(NULL);
+		return this;
+	}
+
+	@Override
+	public JsonWriter value(boolean value) throws IOException {
+		writeDeferredName();
+		out.write(value ? TRUE : FALSE);
+		return this;
+	}
+
+	@Override
+	public JsonWriter value(double value) throws IOException {
+		writeDeferredName();
+		if (value == Math.rint(value) && Math.abs(value) < (double) (1L << 53)) {
+			writeLong((long) value);
+		} else {
+			writeDouble(value);
+		}
+		return this;
+	}
+
+	@Override
+	public JsonWriter value(long value) throws IOException {
+		writeDeferredName();
+		writeLong(value);
+		return this;
+	}
+
+	@Override
+	public JsonWriter value(Number value) throws IOException {
+		if (value == null) {
+			return nullValue();
+		}
+		if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+			return value(value.longValue());
+		}
+		return value(value.doubleValue());
+	}
+
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.flush();
+	}
+
+	private void writeDeferredName() throws IOException {
+		if (deferredName != null) {
+			writeText(deferredName);
+			deferredName = null;
+		}
+	}
+
+	private void writeText(String value) throws IOException {
+		byte[] bytes = value.getBytes(UTF_8);
+		writeHeader(MAJOR_TEXT, bytes.length);
+		out.write(bytes);
+	}
+
+	private void writeLong(long value) throws IOException {
+		if (value >= 0) {
+			writeHeader(MAJOR_UNSIGNED, value);
+		} else {
+			writeHeader(MAJOR_NEGATIVE, -1 - value);
+		}
+	}
+
+	private void writeDouble(double value) throws IOException {
+		out.write(DOUBLE);
+		writeBigEndian(Double.doubleToLongBits(value), 8);
+	}
+
+	private void writeHeader(int major, long length) throws IOException {
+		int type = major << 5;
+		if (length < 24) {
+			out.write(type | (int) length);
+		} else if (length <= 0xffL) {
+			out.write(type | 24);
+			out.write((int) length);
+		} else if (length <= 0xffffL) {
+			out.write(type | 25);
+			writeBigEndian(length, 2);
+		} else if (length <= 0xffffffffL) {
+			out.write(type | 26);
+			writeBigEndian(length, 4);
+		} else {
+			out.write(type | 27);
+			writeBigEndian(length, 8);
+		}
+	}
+
+	private void writeBigEndian(long value, int bytes) throws IOException {
+		for (int shift = (bytes - 1) * 8; shift >= 0; shift -= 8) {
+			out.write((int) (value >>> shift) & 0xff);
+		}
+	}
+}
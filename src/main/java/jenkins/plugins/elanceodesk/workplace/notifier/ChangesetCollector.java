@@ -0,0 +1,208 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import hudson.scm.ChangeLogSet.AffectedFile;
+import hudson.scm.ChangeLogSet.Entry;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import jenkins.plugins.elanceodesk.workplace.notifier.model.BuildState;
+import jenkins.plugins.elanceodesk.workplace.notifier.model.Changeset;
+import jenkins.plugins.elanceodesk.workplace.notifier.model.ChangesetSummary;
+import jenkins.plugins.elanceodesk.workplace.notifier.model.FileEditType;
+
+/**
+ * Collects the change set of a build within configurable limits.
+ * <p>
+ * At most {@link #MAX_ENTRIES} entries with {@link #MAX_FILES_PER_ENTRY}
+ * affected files each are kept, and entries stop being added once their
+ * estimated JSON size reaches {@link #MAX_BYTES}. Files of an entry are kept
+ * up to the first one that does not fit. The byte limit only covers the
+ * change set, not the rest of the payload. When anything is left out,
+ * or when {@link #SUMMARY} is set, the build state also gets
+ * {@code change_set_truncated} and a {@link ChangesetSummary} counting all
+ * entries, so receivers can tell a partial change set from a complete one.
+ */
+final class ChangesetCollector {
+
+	static final int MAX_ENTRIES = Integer.getInteger(ChangesetCollector.class.getName() + ".maxEntries", 100);
+
+	static final int MAX_FILES_PER_ENTRY = Integer.getInteger(ChangesetCollector.class.getName()
+			+ ".maxFilesPerEntry", 100);
+
+	/**
+	 * Estimated size of the change set in the payload, other sections are
+	 * not counted.
+	 */
+	static final int MAX_BYTES = Integer.getInteger(ChangesetCollector.class.getName() + ".maxBytes", 1024 * 1024);
+
+	/**
+	 * Only send the summary instead of the entries.
+	 */
+	static final boolean SUMMARY = Boolean.getBoolean(ChangesetCollector.class.getName() + ".summary");
+
+	static final int TOP_PATHS = Integer.getInteger(ChangesetCollector.class.getName() + ".topPaths", 10);
+
+	/**
+	 * Bounds the number of directories counted for the top paths.
+	 */
+	private static final int MAX_TRACKED_PATHS = 10000;
+
+	/**
+	 * Approximate JSON overhead of an entry and of an affected file.
+	 */
+	private static final int ENTRY_OVERHEAD = 80;
+
+	private static final int FILE_OVERHEAD = 16;
+
+	private final int maxEntries;
+
+	private final int maxFilesPerEntry;
+
+	private final long maxBytes;
+
+	private final boolean summary;
+
+	private final int topPaths;
+
+	private final List<Changeset> changesets = new ArrayList<Changeset>();
+
+	private final Map<String, Integer> editTypes = new LinkedHashMap<String, Integer>();
+
+	private final Map<String, int[]> paths = new HashMap<String, int[]>();
+
+	private int entries;
+
+	private int affectedFiles;
+
+	private long bytes;
+
+	private boolean truncated;
+
+	ChangesetCollector() {
+		this(MAX_ENTRIES, MAX_FILES_PER_ENTRY, MAX_BYTES, SUMMARY, TOP_PATHS);
+	}
+
+	ChangesetCollector(int maxEntries, int maxFilesPerEntry, long maxBytes, boolean summary, int topPaths) {
+		this.maxEntries = maxEntries;
+		this.maxFilesPerEntry = maxFilesPerEntry;
+		this.maxBytes = maxBytes;
+		this.summary = summary;
+		this.topPaths = topPaths;
+	}
+
+	void add(Entry entry) {
+		String displayName = entry.getAuthor().getDisplayName();
+		String id = entry.getAuthor().getId();
+		Collection<? extends AffectedFile> files = entry.getAffectedFiles();
+		entries++;
+
+		boolean keep = !summary && changesets.size() < maxEntries;
+		long size = ENTRY_OVERHEAD + length(displayName) + length(id);
+		keep &= bytes + size <= maxBytes;
+		int kept = 0;
+		// the entry keeps its first files, so stop at the first that does not fit
+		boolean fits = keep;
+		for (AffectedFile file : files) {
+			affectedFiles++;
+			count(file);
+			if (fits && kept < maxFilesPerEntry) {
+				long fileSize = FILE_OVERHEAD + length(file.getPath());
+				if (bytes + size + fileSize <= maxBytes) {
+					size += fileSize;
+					kept++;
+				} else {
+					fits = false;
+				}
+			}
+		}
+
+		if (!keep) {
+			truncated = true;
+			return;
+		}
+		if (kept < files.size()) {
+			truncated = true;
+		}
+		bytes += size;
+		changesets.add(new Changeset(displayName, id, files, kept));
+	}
+
+	void populate(BuildState buildState) {
+		buildState.setChangeSet(changesets);
+		if (truncated) {
+			buildState.setChangeSetTruncated(Boolean.TRUE);
+		}
+		if (truncated || summary) {
+			buildState.setChangeSetSummary(getSummary());
+		}
+	}
+
+	ChangesetSummary getSummary() {
+		Map<String, Integer> types = new LinkedHashMap<String, Integer>(editTypes);
+
+		List<Map.Entry<String, int[]>> sorted = new ArrayList<Map.Entry<String, int[]>>(paths.entrySet());
+		Collections.sort(sorted, new Comparator<Map.Entry<String, int[]>>() {
+			public int compare(Map.Entry<String, int[]> o1, Map.Entry<String, int[]> o2) {
+				int c = o2.getValue()[0] - o1.getValue()[0];
+				return c != 0 ? c : o1.getKey().compareTo(o2.getKey());
+			}
+		});
+		Map<String, Integer> top = new LinkedHashMap<String, Integer>();
+		for (Map.Entry<String, int[]> path : sorted) {
+			if (top.size() == topPaths) {
+				break;
+			}
+			top.put(path.getKey(), path.getValue()[0]);
+		}
+		return new ChangesetSummary(entries, affectedFiles, types, top);
+	}
+
+	private void count(AffectedFile file) {
+		String type = FileEditType.nameOf(file.getEditType());
+		Integer count = editTypes.get(type);
+		editTypes.put(type, count == null ? 1 : count + 1);
+
+		String directory = getDirectory(file.getPath());
+		int[] counter = paths.get(directory);
+		if (counter == null) {
+			if (paths.size() == MAX_TRACKED_PATHS) {
+				return;
+			}
+			counter = new int[1];
+			paths.put(directory, counter);
+		}
+		counter[0]++;
+	}
+
+	private static String getDirectory(String path) {
+		if (path == null) {
+			return "";
+		}
+		int slash = path.lastIndexOf('/');
+		return slash <= 0 ? "" : path.substring(0, slash);
+	}
+
+	private static int length(String s) {
+		return s == null ? 0 : s.length();
+	}
+}
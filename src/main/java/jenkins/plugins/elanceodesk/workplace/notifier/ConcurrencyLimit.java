@@ -0,0 +1,203 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adaptive limit of concurrent deliveries to one endpoint.
+ * <p>
+ * The limit follows AIMD: it grows by about one for every {@code limit}
+ * attempts that complete within {@code tolerance} percent of the endpoint's
+ * baseline latency while the limit is in use, and is cut to {@code backoff}
+ * percent when an attempt fails with an error, a timeout or a retryable
+ * status, or takes longer than that. Only attempts started after the last cut
+ * can cut it again, so a burst of slow responses to requests sent at the old
+ * limit counts once. The baseline is the lowest latency seen, drifting slowly
+ * towards higher samples so that an endpoint that got slower for good is not
+ * held back forever.
+ * <p>
+ * Deliveries that find the limit in use wait in a queue without holding a
+ * thread and are started as permits are released.
+ */
+public final class ConcurrencyLimit {
+
+	static final int INITIAL_LIMIT = Integer.getInteger(ConcurrencyLimit.class.getName() + ".initial", 4);
+
+	static final int MIN_LIMIT = Math.max(1, Integer.getInteger(ConcurrencyLimit.class.getName() + ".min", 1));
+
+	/**
+	 * Defaults to the connections kept per host, more would only wait for a
+	 * connection.
+	 */
+	static final int MAX_LIMIT = Integer.getInteger(ConcurrencyLimit.class.getName() + ".max",
+			Integer.getInteger(HttpWorker.class.getName() + ".maxConnectionsPerHost", 20));
+
+	static final int TOLERANCE = Integer.getInteger(ConcurrencyLimit.class.getName() + ".tolerance", 200);
+
+	static final int BACKOFF = Integer.getInteger(ConcurrencyLimit.class.getName() + ".backoff", 70);
+
+	/**
+	 * Share of the distance to a higher sample the baseline moves by.
+	 */
+	private static final double BASELINE_DRIFT = 0.01;
+
+	private final int min;
+
+	private final int max;
+
+	private double limit;
+
+	private int inFlight;
+
+	/**
+	 * Baseline latency in nanoseconds, {@code 0} until the first sample.
+	 */
+	private double baseline;
+
+	/**
+	 * {@link System#nanoTime()} of the last cut.
+	 */
+	private long lastCut = System.nanoTime();
+
+	private final Queue<Runnable> waiting = new ArrayDeque<Runnable>();
+
+	ConcurrencyLimit() {
+		this(INITIAL_LIMIT, MIN_LIMIT, MAX_LIMIT);
+	}
+
+	ConcurrencyLimit(int initial, int min, int max) {
+		this.min = min;
+		this.max = Math.max(min, max);
+		this.limit = Math.max(min, Math.min(initial, this.max));
+	}
+
+	/**
+	 * Takes a permit if the limit allows another delivery and none is
+	 * waiting.
+	 */
+	synchronized boolean tryAcquire() {
+		if (waiting.isEmpty() && inFlight < (int) limit) {
+			inFlight++;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Takes a permit for the task, or queues it to be returned by
+	 * {@link #release()} once a permit is free.
+	 *
+	 * @return {@code true} if the task holds a permit and should be started
+	 */
+	synchronized boolean acquireOrQueue(Runnable task) {
+		if (tryAcquire()) {
+			return true;
+		}
+		waiting.add(task);
+		return false;
+	}
+
+	/**
+	 * Gives back a permit.
+	 *
+	 * @return a queued task that took over the permit and must be started, or
+	 *         {@code null}
+	 */
+	synchronized Runnable release() {
+		return release(true);
+	}
+
+	/**
+	 * Gives back a permit.
+	 *
+	 * @param handOver
+	 *            whether a queued task may take over the permit, otherwise
+	 *            queued tasks keep waiting
+	 * @return a queued task that took over the permit and must be started, or
+	 *         {@code null}
+	 */
+	synchronized Runnable release(boolean handOver) {
+		if (handOver && !waiting.isEmpty() && inFlight <= (int) limit) {
+			return waiting.poll();
+		}
+		inFlight = Math.max(0, inFlight - 1);
+		return null;
+	}
+
+	/**
+	 * Takes a permit for the first queued task if the limit allows it.
+	 *
+	 * @return the task, which must be started, or {@code null}
+	 */
+	synchronized Runnable acquireWaiting() {
+		if (!waiting.isEmpty() && inFlight < (int) limit) {
+			inFlight++;
+			return waiting.poll();
+		}
+		return null;
+	}
+
+	/**
+	 * Adjusts the limit to a completed attempt.
+	 *
+	 * @param start
+	 *            {@link System#nanoTime()} when the attempt was sent
+	 * @param overload
+	 *            whether the attempt failed in a way that points at an
+	 *            overloaded endpoint, rather than a rejected payload
+	 */
+	synchronized void sample(long start, long end, boolean overload) {
+		long latency = Math.max(1, end - start);
+		if (!overload) {
+			baseline = baseline == 0 || latency < baseline ? latency : baseline + (latency - baseline)
+					* BASELINE_DRIFT;
+		}
+		if (overload || latency > baseline * TOLERANCE / 100d) {
+			if (start - lastCut >= 0) {
+				limit = Math.max(min, limit * BACKOFF / 100d);
+				lastCut = end;
+			}
+		} else if (inFlight * 2 >= (int) limit) {
+			limit = Math.min(max, limit + 1 / limit);
+		}
+	}
+
+	/**
+	 * Deliveries currently allowed at once.
+	 */
+	public synchronized int getCurrent() {
+		return (int) limit;
+	}
+
+	public synchronized int getInFlight() {
+		return inFlight;
+	}
+
+	/**
+	 * Deliveries waiting for a permit.
+	 */
+	public synchronized int getWaiting() {
+		return waiting.size();
+	}
+
+	/**
+	 * Baseline latency in milliseconds.
+	 */
+	public synchronized double getBaseline() {
+		return baseline / TimeUnit.MILLISECONDS.toNanos(1);
+	}
+}
@@ -0,0 +1,97 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import hudson.Extension;
+import hudson.model.ManagementLink;
+
+import java.util.List;
+
+import jenkins.model.Jenkins;
+
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.HttpResponses;
+import org.kohsuke.stapler.interceptor.RequirePOST;
+
+/**
+ * Management page showing live delivery state: queued and in flight
+ * deliveries, success rate, latency and health per endpoint, and the most
+ * recent failures. Everything is read from {@link DeliveryStats}.
+ * <p>
+ * Delivery can be paused from here for maintenance, see
+ * {@link DeliveryService#pause()}.
+ */
+@Extension
+public class DeliveryDashboard extends ManagementLink {
+
+	@Override
+	public String getIconFileName() {
+		return "network.png";
+	}
+
+	@Override
+	public String getUrlName() {
+		return "workplace-deliveries";
+	}
+
+	public String getDisplayName() {
+		return "Workplace Deliveries";
+	}
+
+	@Override
+	public String getDescription() {
+		return "Live state of job notification deliveries per webhook endpoint.";
+	}
+
+	public List<DeliveryStats.Endpoint> getEndpoints() {
+		return DeliveryStats.getEndpoints();
+	}
+
+	public List<DeliveryStats.Failure> getFailures() {
+		return DeliveryStats.getFailures();
+	}
+
+	public boolean isPaused() {
+		return DeliveryService.isPaused();
+	}
+
+	/**
+	 * Number of deliveries stored while paused or at the last shutdown.
+	 */
+	public int getStored() {
+		return DeliveryService.getStored();
+	}
+
+	@RequirePOST
+	public HttpResponse doPause() {
+		Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+		DeliveryService.pause();
+		return HttpResponses.redirectToDot();
+	}
+
+	@RequirePOST
+	public HttpResponse doResume() {
+		Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+		DeliveryService.resume();
+		return HttpResponses.redirectToDot();
+	}
+
+	/**
+	 * Number of entries in the outbox, {@code -1} if outbox mode is off.
+	 */
+	public int getOutboxSize() {
+		Outbox outbox = Outbox.get();
+		return outbox == null ? -1 : outbox.size();
+	}
+}
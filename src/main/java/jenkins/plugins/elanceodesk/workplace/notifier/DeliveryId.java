@@ -0,0 +1,90 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import java.nio.charset.Charset;
+import java.util.UUID;
+
+import jenkins.model.Jenkins;
+
+/**
+ * Stable identifiers for notifications.
+ * <p>
+ * An event id is derived from the controller, job, build number and phase; a
+ * delivery id additionally from the endpoint. Both are name based UUIDs, so
+ * the same notification always gets the same ids no matter how often it is
+ * retried, while jobs of the same name on different controllers, e.g.
+ * sharing a {@link FileOutbox} or a receiver, do not collide.
+ */
+public final class DeliveryId {
+
+	public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static volatile String controller;
+
+	private DeliveryId() {
+	}
+
+	public static String forEvent(String jobFullName, int buildNumber, Phase phase) {
+		return forEvent(jobFullName, buildNumber, phase, null);
+	}
+
+	/**
+	 * @param qualifier
+	 *            distinguishes events of a phase that occurs more than once per
+	 *            build, like the stage name; {@code null} otherwise
+	 */
+	public static String forEvent(String jobFullName, int buildNumber, Phase phase, String qualifier) {
+		return forEvent(getController(), jobFullName, buildNumber, phase, qualifier);
+	}
+
+	/**
+	 * @param controller
+	 *            identity of the controller, empty if unknown
+	 */
+	static String forEvent(String controller, String jobFullName, int buildNumber, Phase phase, String qualifier) {
+		String name = jobFullName + '#' + buildNumber + '#' + phase.name();
+		if (!controller.isEmpty()) {
+			name = controller + '/' + name;
+		}
+		return nameUuid(qualifier == null ? name : name + '#' + qualifier);
+	}
+
+	public static String forDelivery(String eventId, String url) {
+		return nameUuid(eventId + '@' + url);
+	}
+
+	/**
+	 * Instance id of this controller, derived from its secret key, so it is
+	 * kept across restarts and shared by controllers with the same home.
+	 */
+	private static String getController() {
+		String id = controller;
+		if (id == null) {
+			Jenkins jenkins = Jenkins.getInstance();
+			if (jenkins == null) {
+				return "";
+			}
+			id = jenkins.getLegacyInstanceId();
+			controller = id;
+		}
+		return id;
+	}
+
+	private static String nameUuid(String name) {
+		return UUID.nameUUIDFromBytes(name.getBytes(UTF_8)).toString();
+	}
+}
@@ -0,0 +1,539 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import hudson.Extension;
+import hudson.model.PeriodicWork;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Level gated log of the delivery path.
+ * <p>
+ * Call sites fill in a {@link Record} that is kept per thread and reused, and
+ * nothing is formatted unless the event passes a level: the build log gets
+ * the familiar text lines for events at {@code level} or above, and the file
+ * given by {@code file}, if any, gets one JSON object per line for events at
+ * {@code fileLevel} or above. The file is rotated after {@code fileSizeMB},
+ * keeping {@code files} old files as {@code <file>.1}, {@code <file>.2} and so
+ * on.
+ *
+ * <pre>
+ * DeliveryLog.event(Event.DELIVERED, logger).url(url).deliveryId(id).elapsed(nanos).log();
+ * </pre>
+ */
+public final class DeliveryLog {
+
+	private static final Logger LOGGER = Logger.getLogger(DeliveryLog.class.getName());
+
+	public enum Severity {
+		DEBUG, INFO, WARNING, ERROR
+	}
+
+	static final Severity LEVEL = severity(System.getProperty(DeliveryLog.class.getName() + ".level"),
+			Severity.INFO);
+
+	static final Severity FILE_LEVEL = severity(System.getProperty(DeliveryLog.class.getName() + ".fileLevel"),
+			Severity.DEBUG);
+
+	static final String FILE = System.getProperty(DeliveryLog.class.getName() + ".file");
+
+	static final long FILE_SIZE = Integer.getInteger(DeliveryLog.class.getName() + ".fileSizeMB", 10) * 1024L * 1024L;
+
+	static final int FILES = Integer.getInteger(DeliveryLog.class.getName() + ".files", 5);
+
+	private static final FileSink SINK = FILE == null || FILE.trim().length() == 0 ? null : new FileSink(new File(
+			FILE.trim()), FILE_SIZE, FILES);
+
+	private static final ThreadLocal<Record> RECORD = new ThreadLocal<Record>() {
+		@Override
+		protected Record initialValue() {
+			return new Record();
+		}
+	};
+
+	/**
+	 * Events of the delivery path with their build log text.
+	 */
+	public enum Event {
+
+		NOTIFYING(Severity.INFO) {
+			@Override
+			void print(Record r, PrintStream out) {
+				out.print("Notifying webhook '");
+				out.print(r.url);
+				out.println('\'');
+			}
+		},
+
+		ALREADY_QUEUED(Severity.INFO) {
+			@Override
+			void print(Record r, PrintStream out) {
+				out.print("Notification ");
+				out.print(r.deliveryId);
+				out.print(" for webhook '");
+				out.print(r.url);
+				out.println("' is already queued");
+			}
+		},
+
+		/**
+		 * Stored for later, the detail tells why.
+		 */
+		STORED(Severity.INFO) {
+			@Override
+			void print(Record r, PrintStream out) {
+				out.print("Delivery is ");
+				out.print(r.detail);
+				out.print(", storing notification ");
+				out.print(r.deliveryId);
+				out.print(" for webhook '");
+				out.print(r.url);
+				out.println('\'');
+			}
+		},
+
+		ATTEMPT(Severity.INFO) {
+			@Override
+			void print(Record r, PrintStream out) {
+				out.print("Posting data to webhook - ");
+				out.print(r.url);
+				out.print(". Already Tried ");
+				out.print(r.attempt);
+				out.println(" times");
+			}
+		},
+
+		DELIVERED(Severity.INFO) {
+			@Override
+			void print(Record r, PrintStream out) {
+				out.print("Posting data to webhook - ");
+				out.print(r.url);
+				out.println(" completed ");
+			}
+		},
+
+		/**
+		 * Unsuccessful status, the detail is the start of the response.
+		 */
+		REJECTED(Severity.WARNING) {
+			@Override
+			void print(Record r, PrintStream out) {
+				out.print("Posting data to - ");
+				out.print(r.url);
+				out.print(" may have failed. Webhook responded with status code - ");
+				out.println(r.status);
+				out.print("Message from webhook - ");
+				out.println(r.detail);
+			}
+		},
+
+		NOT_RETRYABLE(Severity.WARNING) {
+			@Override
+			void print(Record r, PrintStream out) {
+				out.print("Status code ");
+				out.print(r.status);
+				out.print(" from webhook - ");
+				out.print(r.url);
+				out.println(" is not retryable");
+			}
+		},
+
+		FAILED(Severity.ERROR) {
+			@Override
+			void print(Record r, PrintStream out) {
+				out.print("Failed to post data to webhook - ");
+				out.println(r.url);
+				if (r.error != null) {
+					r.error.printStackTrace(out);
+				}
+			}
+		},
+
+		/**
+		 * A change log entry, the detail is the entry.
+		 */
+		CHANGESET_ENTRY(Severity.DEBUG) {
+			@Override
+			void print(Record r, PrintStream out) {
+				out.print("Entry ");
+				out.println(r.detail);
+			}
+		};
+
+		private final Severity severity;
+
+		private Event(Severity severity) {
+			this.severity = severity;
+		}
+
+		public Severity getSeverity() {
+			return severity;
+		}
+
+		abstract void print(Record r, PrintStream out);
+	}
+
+	private DeliveryLog() {
+	}
+
+	/**
+	 * Whether the event is logged anywhere, for call sites that need to
+	 * compute a value just for the log.
+	 */
+	public static boolean isEnabled(Event event) {
+		return event.severity.compareTo(LEVEL) >= 0 || (SINK != null && event.severity.compareTo(FILE_LEVEL) >= 0);
+	}
+
+	/**
+	 * Starts a record of the event. The record belongs to the calling thread
+	 * and must be logged before the next one is started.
+	 *
+	 * @param out
+	 *            build log, {@code null} to only write the log file
+	 */
+	public static Record event(Event event, PrintStream out) {
+		Record record = RECORD.get();
+		record.reset(event, out);
+		return record;
+	}
+
+	/**
+	 * Flushes lines of the log file that no later write flushed.
+	 */
+	static void flush() {
+		if (SINK != null) {
+			SINK.flush();
+		}
+	}
+
+	/**
+	 * Flushes and closes the log file.
+	 */
+	static void close() {
+		if (SINK != null) {
+			SINK.close();
+		}
+	}
+
+	private static Severity severity(String name, Severity defaultValue) {
+		if (name != null) {
+			try {
+				return Severity.valueOf(name.trim().toUpperCase());
+			} catch (IllegalArgumentException e) {
+				LOGGER.log(Level.WARNING, "Unknown delivery log level {0}", name);
+			}
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * One event being logged. Values that are not set are left out.
+	 */
+	public static final class Record {
+
+		private final StringBuilder json = new StringBuilder(256);
+
+		private Event event;
+
+		private PrintStream out;
+
+		private String url;
+
+		private String deliveryId;
+
+		private int attempt;
+
+		private int status;
+
+		private long elapsed;
+
+		private Object detail;
+
+		private Throwable error;
+
+		private Record() {
+		}
+
+		void reset(Event event, PrintStream out) {
+			this.event = event;
+			this.out = out;
+			this.url = null;
+			this.deliveryId = null;
+			this.attempt = 0;
+			this.status = 0;
+			this.elapsed = -1;
+			this.detail = null;
+			this.error = null;
+		}
+
+		public Record url(String url) {
+			this.url = url;
+			return this;
+		}
+
+		public Record deliveryId(String deliveryId) {
+			this.deliveryId = deliveryId;
+			return this;
+		}
+
+		public Record attempt(int attempt) {
+			this.attempt = attempt;
+			return this;
+		}
+
+		public Record status(int status) {
+			this.status = status;
+			return this;
+		}
+
+		/**
+		 * @param nanos
+		 *            duration of the attempt
+		 */
+		public Record elapsed(long nanos) {
+			this.elapsed = nanos;
+			return this;
+		}
+
+		/**
+		 * Event specific detail, turned into a string only if the event is
+		 * logged.
+		 */
+		public Record detail(Object detail) {
+			this.detail = detail;
+			return this;
+		}
+
+		public Record error(Throwable error) {
+			this.error = error;
+			return this;
+		}
+
+		public void log() {
+			Severity severity = event.severity;
+			if (out != null && severity.compareTo(LEVEL) >= 0) {
+				synchronized (out) {
+					event.print(this, out);
+				}
+			}
+			if (SINK != null && severity.compareTo(FILE_LEVEL) >= 0) {
+				SINK.write(toJson(), severity.compareTo(Severity.WARNING) >= 0);
+			}
+			out = null;
+			detail = null;
+			error = null;
+		}
+
+		private StringBuilder toJson() {
+			StringBuilder b = json;
+			b.setLength(0);
+			b.append("{\"time\":").append(System.currentTimeMillis());
+			b.append(",\"level\":\"").append(event.severity.name());
+			b.append("\",\"event\":\"").append(event.name()).append('"');
+			string(b, "url", url);
+			string(b, "delivery", deliveryId);
+			if (attempt > 0) {
+				b.append(",\"attempt\":").append(attempt);
+			}
+			if (status > 0) {
+				b.append(",\"status\":").append(status);
+			}
+			if (elapsed >= 0) {
+				b.append(",\"elapsed_ms\":").append(TimeUnit.NANOSECONDS.toMillis(elapsed));
+			}
+			string(b, "detail", detail == null ? null : detail.toString());
+			if (error != null) {
+				string(b, "error", error.toString());
+			}
+			return b.append("}\n");
+		}
+
+		private static void string(StringBuilder b, String name, String value) {
+			if (value == null) {
+				return;
+			}
+			b.append(",\"").append(name).append("\":\"");
+			for (int i = 0; i < value.length(); i++) {
+				char c = value.charAt(i);
+				if (c == '"' || c == '\\') {
+					b.append('\\').append(c);
+				} else if (c == '\n') {
+					b.append("\\n");
+				} else if (c == '\r') {
+					b.append("\\r");
+				} else if (c == '\t') {
+					b.append("\\t");
+				} else if (c < 0x20) {
+					b.append("\\u00").append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xf, 16));
+				} else {
+					b.append(c);
+				}
+			}
+			b.append('"');
+		}
+	}
+
+	/**
+	 * Flushes the log file once a second, so that lines are not held back
+	 * until the next event is written.
+	 */
+	@Extension
+	public static class Flush extends PeriodicWork {
+
+		@Override
+		public long getRecurrencePeriod() {
+			return FileSink.FLUSH_INTERVAL;
+		}
+
+		@Override
+		protected void doRun() {
+			flush();
+		}
+	}
+
+	/**
+	 * Appends lines to a file, rotating it by size. Lines are flushed right
+	 * away for warnings and errors, otherwise by a write a second after the
+	 * last flush or by {@link Flush}.
+	 */
+	static final class FileSink {
+
+		private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+		private static final long FLUSH_INTERVAL = TimeUnit.SECONDS.toMillis(1);
+
+		private final File file;
+
+		private final long maxSize;
+
+		private final int files;
+
+		private Writer writer;
+
+		private long size;
+
+		private long flushed;
+
+		/**
+		 * Set while lines were written since the last flush.
+		 */
+		private boolean dirty;
+
+		private char[] chars = new char[512];
+
+		FileSink(File file, long maxSize, int files) {
+			this.file = file;
+			this.maxSize = maxSize;
+			this.files = files;
+		}
+
+		synchronized void write(CharSequence line, boolean flush) {
+			try {
+				if (writer == null) {
+					open();
+				} else if (size >= maxSize) {
+					rotate();
+				}
+				int length = line.length();
+				if (chars.length < length) {
+					chars = new char[Math.max(chars.length * 2, length)];
+				}
+				for (int i = 0; i < length; i++) {
+					chars[i] = line.charAt(i);
+				}
+				writer.write(chars, 0, length);
+				size += length;
+				dirty = true;
+				if (flush || System.currentTimeMillis() - flushed >= FLUSH_INTERVAL) {
+					flushWriter();
+				}
+			} catch (IOException e) {
+				LOGGER.log(Level.WARNING, "Unable to write the delivery log " + file, e);
+				closeQuietly();
+			}
+		}
+
+		synchronized void flush() {
+			if (writer == null || !dirty) {
+				return;
+			}
+			try {
+				flushWriter();
+			} catch (IOException e) {
+				LOGGER.log(Level.WARNING, "Unable to write the delivery log " + file, e);
+				closeQuietly();
+			}
+		}
+
+		private void flushWriter() throws IOException {
+			writer.flush();
+			flushed = System.currentTimeMillis();
+			dirty = false;
+		}
+
+		synchronized void close() {
+			closeQuietly();
+		}
+
+		private void open() throws IOException {
+			File parent = file.getAbsoluteFile().getParentFile();
+			if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+				throw new IOException("Unable to create " + parent);
+			}
+			size = file.length();
+			writer = new OutputStreamWriter(new FileOutputStream(file, true), UTF_8);
+			flushed = System.currentTimeMillis();
+		}
+
+		private void rotate() throws IOException {
+			closeQuietly();
+			for (int i = files - 1; i >= 1; i--) {
+				File from = new File(file.getPath() + "." + i);
+				if (from.exists()) {
+					File to = new File(file.getPath() + "." + (i + 1));
+					to.delete();
+					from.renameTo(to);
+				}
+			}
+			File first = new File(file.getPath() + ".1");
+			first.delete();
+			if (files <= 0 || !file.renameTo(first)) {
+				file.delete();
+			}
+			open();
+		}
+
+		private void closeQuietly() {
+			if (writer != null) {
+				try {
+					writer.close();
+				} catch (IOException e) {
+					// nothing left to do
+				}
+				writer = null;
+				dirty = false;
+			}
+		}
+	}
+}
@@ -0,0 +1,407 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import hudson.Extension;
+import hudson.init.Terminator;
+import hudson.model.PeriodicWork;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import jenkins.model.Jenkins;
+
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Owns the notifier threads and their lifecycle.
+ * <p>
+ * On shutdown new deliveries are no longer started and running ones get
+ * until the {@code drainSeconds} deadline to finish. Deliveries that are
+ * still pending by then are handed off to a {@link FileOutbox} in
+ * {@code workplace-handoff} under the Jenkins home and replayed after the
+ * restart; the delivery id lets receivers drop a delivery that was in fact
+ * completed right at the deadline. While delivery is paused, new deliveries
+ * go to the same store and are replayed on resume.
+ * <p>
+ * Deliveries to one endpoint run up to its {@link ConcurrencyLimit}; the
+ * rest wait for a permit without taking a thread.
+ */
+public final class DeliveryService {
+
+	private static final Logger LOGGER = Logger.getLogger(DeliveryService.class.getName());
+
+	static final long DRAIN_TIMEOUT = TimeUnit.SECONDS.toMillis(Integer.getInteger(DeliveryService.class.getName()
+			+ ".drainSeconds", 30));
+
+	private static volatile ExecutorService executor = newExecutor();
+
+	private static final Set<Delivery> PENDING = Collections
+			.newSetFromMap(new ConcurrentHashMap<Delivery, Boolean>());
+
+	private static volatile boolean stopping;
+
+	private static volatile boolean paused;
+
+	private static volatile FileOutbox handoff;
+
+	/**
+	 * Set while stored entries are replayed, so that a resume and the
+	 * periodic replay do not both deliver, each at the full rate.
+	 */
+	private static final AtomicBoolean REPLAYING = new AtomicBoolean();
+
+	private DeliveryService() {
+	}
+
+	private static ExecutorService newExecutor() {
+		return Executors.newCachedThreadPool(new NamingThreadFactory(new DaemonThreadFactory(), "Workplace notifier"));
+	}
+
+	/**
+	 * Runs notifier work, like building a payload, on a notifier thread.
+	 */
+	static void execute(Runnable task) {
+		try {
+			executor.execute(task);
+		} catch (RejectedExecutionException e) {
+			LOGGER.log(Level.WARNING, "Jenkins is shutting down, dropping notifier task {0}", task);
+		}
+	}
+
+	/**
+	 * Posts a payload to a webhook, or stores it for later while delivery is
+	 * paused or shutting down.
+	 *
+	 * @param jobFullName
+	 *            job notified about, where the secret of a stored delivery is
+	 *            looked up
+	 */
+	static void deliver(Webhook target, String jobFullName, Payload payload, String deliveryId, PrintStream logger) {
+		Delivery delivery = new Delivery(target, jobFullName, payload, deliveryId, logger);
+		if (paused || stopping) {
+			DeliveryLog.event(DeliveryLog.Event.STORED, logger).url(target.getUrl()).deliveryId(deliveryId)
+					.detail(stopping ? "shutting down" : "paused").log();
+			delivery.handOff();
+			return;
+		}
+		PENDING.add(delivery);
+		delivery.queue();
+		if (delivery.limit.acquireOrQueue(delivery)) {
+			start(delivery);
+		}
+	}
+
+	/**
+	 * Gives back a permit of an endpoint's limit and starts the delivery
+	 * waiting for it, if any. While paused or shutting down, waiting
+	 * deliveries stay queued; they are still pending, so they are started on
+	 * resume or stored on shutdown.
+	 */
+	static void release(ConcurrencyLimit limit) {
+		Runnable next = limit.release(!paused && !stopping);
+		if (next != null) {
+			start((Delivery) next);
+		}
+	}
+
+	private static void start(Delivery delivery) {
+		try {
+			executor.execute(delivery);
+		} catch (RejectedExecutionException e) {
+			PENDING.remove(delivery);
+			release(delivery.limit);
+			delivery.handOff();
+		}
+	}
+
+	public static boolean isPaused() {
+		return paused;
+	}
+
+	/**
+	 * Stops starting deliveries. Deliveries already running are finished,
+	 * those waiting for a permit of their endpoint keep waiting.
+	 */
+	public static void pause() {
+		paused = true;
+		LOGGER.log(Level.INFO, "Webhook delivery paused");
+	}
+
+	/**
+	 * Starts delivering again: the deliveries that waited for a permit while
+	 * paused, then those stored while paused.
+	 */
+	public static void resume() {
+		paused = false;
+		LOGGER.log(Level.INFO, "Webhook delivery resumed");
+		for (DeliveryStats.Endpoint endpoint : DeliveryStats.getEndpoints()) {
+			Runnable next;
+			while (!paused && (next = endpoint.getLimit().acquireWaiting()) != null) {
+				start((Delivery) next);
+			}
+		}
+		execute(new Runnable() {
+			public void run() {
+				replay();
+			}
+		});
+	}
+
+	/**
+	 * Number of deliveries waiting in the hand-off store.
+	 */
+	public static int getStored() {
+		FileOutbox store = getHandoff();
+		return store == null ? 0 : store.size();
+	}
+
+	@Terminator
+	public static void shutdown() throws InterruptedException {
+		shutdown(DRAIN_TIMEOUT);
+	}
+
+	/**
+	 * @param drainTimeout
+	 *            milliseconds running deliveries get to finish before they
+	 *            are stored
+	 */
+	static void shutdown(long drainTimeout) throws InterruptedException {
+		stopping = true;
+		OutboxWorkers.stop();
+		executor.shutdown();
+		if (!executor.awaitTermination(drainTimeout, TimeUnit.MILLISECONDS)) {
+			LOGGER.log(Level.INFO, "{0} webhook deliveries did not finish within {1} ms, storing them", new Object[] {
+					PENDING.size(), drainTimeout });
+			executor.shutdownNow();
+		}
+		for (Delivery delivery : PENDING) {
+			delivery.handOff();
+		}
+		PENDING.clear();
+
+		Outbox outbox = Outbox.get();
+		if (outbox instanceof EmbeddedOutbox) {
+			try {
+				OutboxEntry entry;
+				while ((entry = outbox.poll()) != null) {
+					handOff(entry);
+					outbox.complete(entry);
+				}
+			} catch (IOException e) {
+				LOGGER.log(Level.WARNING, "Unable to store the embedded outbox", e);
+			}
+		}
+		DeliveryLog.close();
+	}
+
+	/**
+	 * Test hook, not called by the plugin: undoes {@link #shutdown(long)} and
+	 * {@link #pause()} and stores hand-offs in the given outbox instead of
+	 * under the Jenkins home, so that tests can run the service more than
+	 * once.
+	 */
+	@Restricted(NoExternalUse.class)
+	static void restart(FileOutbox store) {
+		if (executor.isShutdown()) {
+			executor = newExecutor();
+		}
+		handoff = store;
+		stopping = false;
+		paused = false;
+	}
+
+	/**
+	 * Delivers stored entries that are due. Blocks while posting, so it is
+	 * only run on a notifier thread. Returns at once if a replay is already
+	 * running.
+	 */
+	static void replay() {
+		if (paused || stopping) {
+			return;
+		}
+		FileOutbox store = getHandoff();
+		if (store == null || store.size() == 0 || !REPLAYING.compareAndSet(false, true)) {
+			return;
+		}
+		Outbox outbox = Outbox.get();
+		try {
+			if (outbox != null) {
+				// the outbox workers take it from here
+				OutboxEntry entry;
+				while ((entry = store.poll()) != null) {
+					outbox.offer(entry);
+					store.complete(entry);
+				}
+			} else {
+				OutboxWorkers workers = new OutboxWorkers(store, new EndpointRateLimiter(
+						OutboxWorkers.RATE_PER_SECOND, OutboxWorkers.BURST));
+				while (!paused && workers.deliverNext()) {
+					// until nothing is due
+				}
+			}
+		} catch (Exception e) {
+			LOGGER.log(Level.WARNING, "Failed to replay stored webhook deliveries", e);
+		} finally {
+			REPLAYING.set(false);
+		}
+	}
+
+	private static void handOff(OutboxEntry entry) {
+		try {
+			Outbox outbox = Outbox.get();
+			FileOutbox store = getHandoff();
+			if (outbox instanceof FileOutbox) {
+				outbox.offer(entry);
+			} else if (store != null) {
+				store.offer(entry);
+			} else {
+				LOGGER.log(Level.WARNING, "Jenkins is not running, dropping webhook delivery {0}", entry);
+			}
+		} catch (Exception e) {
+			LOGGER.log(Level.WARNING, "Unable to store webhook delivery " + entry, e);
+		}
+	}
+
+	/**
+	 * @return the hand-off store, {@code null} if Jenkins is not running
+	 */
+	private static FileOutbox getHandoff() {
+		FileOutbox store = handoff;
+		if (store == null) {
+			Jenkins jenkins = Jenkins.getInstance();
+			if (jenkins == null) {
+				return null;
+			}
+			store = new FileOutbox(new File(jenkins.getRootDir(), "workplace-handoff"));
+			handoff = store;
+		}
+		return store;
+	}
+
+	/**
+	 * Replays stored deliveries after a restart and retries failed replays.
+	 * The replay runs on a notifier thread rather than on the timer thread
+	 * shared by all periodic work.
+	 */
+	@Extension
+	public static class Replay extends PeriodicWork {
+
+		@Override
+		public long getRecurrencePeriod() {
+			return MIN;
+		}
+
+		@Override
+		protected void doRun() {
+			execute(new Runnable() {
+				public void run() {
+					replay();
+				}
+			});
+		}
+	}
+
+	private static final class Delivery implements Runnable {
+
+		private final Webhook target;
+
+		private final String jobFullName;
+
+		private final Payload payload;
+
+		private final String deliveryId;
+
+		private final PrintStream logger;
+
+		private final DeliveryStats.Endpoint stats;
+
+		private final ConcurrencyLimit limit;
+
+		/**
+		 * Set while the delivery is counted as queued in its endpoint's stats,
+		 * from being accepted until it starts or is stored.
+		 */
+		private final AtomicBoolean queued = new AtomicBoolean();
+
+		/**
+		 * Set once the delivery finished or was handed off. A delivery still
+		 * running at the drain deadline is handed off and may finish later.
+		 */
+		private final AtomicBoolean done = new AtomicBoolean();
+
+		Delivery(Webhook target, String jobFullName, Payload payload, String deliveryId, PrintStream logger) {
+			this.target = target;
+			this.jobFullName = jobFullName;
+			this.payload = payload;
+			this.deliveryId = deliveryId;
+			this.logger = logger;
+			this.stats = DeliveryStats.forUrl(target.getUrl());
+			this.limit = stats.getLimit();
+		}
+
+		void queue() {
+			queued.set(true);
+			stats.queued();
+		}
+
+		private void dequeue() {
+			if (queued.compareAndSet(true, false)) {
+				stats.dequeued();
+			}
+		}
+
+		public void run() {
+			dequeue();
+			HttpWorker worker = null;
+			try {
+				worker = new HttpWorker(target, payload, deliveryId, 3, logger);
+				worker.run();
+			} finally {
+				release(limit);
+				if (!stopping || (worker != null && (worker.isDelivered() || worker.isTerminal()))) {
+					PENDING.remove(this);
+					done.set(true);
+				}
+			}
+		}
+
+		void handOff() {
+			dequeue();
+			if (!done.compareAndSet(false, true)) {
+				return;
+			}
+			DeliveryService.handOff(OutboxEntry.create(target, jobFullName, payload, deliveryId));
+		}
+
+		@Override
+		public String toString() {
+			return deliveryId + " for " + target;
+		}
+	}
+}
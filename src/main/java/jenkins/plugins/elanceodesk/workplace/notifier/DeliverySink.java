@@ -0,0 +1,125 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import hudson.ExtensionList;
+import hudson.ExtensionPoint;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import jenkins.model.Jenkins;
+
+/**
+ * Destination for webhook URLs that are not http or https, e.g. a consumer
+ * on the controller host that should not be reached through loopback HTTP.
+ * <p>
+ * A sink is selected by the scheme of the webhook URL. Deliveries to a sink
+ * go through the same {@link DeliveryService} or {@link Outbox} queueing,
+ * {@link ConcurrencyLimit}, retries and {@link DeliveryStats} as HTTP
+ * deliveries; {@link HttpWorker} only calls {@link #send} instead of posting.
+ * The built in sinks write one payload per line, see {@link LineStream}.
+ */
+public abstract class DeliverySink implements ExtensionPoint {
+
+	/**
+	 * URL scheme this sink handles.
+	 */
+	public abstract String getScheme();
+
+	/**
+	 * Checks a URL of this sink's scheme when the configuration is saved.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if payloads can never be sent to the URL
+	 */
+	public void validate(URI uri) {
+	}
+
+	/**
+	 * Writes a payload, returning once the sink has it.
+	 *
+	 * @throws IOException
+	 *             if the attempt failed and may be retried
+	 * @throws IllegalArgumentException
+	 *             if the payload can never be written to the sink
+	 */
+	public abstract void send(URI uri, Payload payload, int timeout) throws IOException;
+
+	/**
+	 * The sink handling the scheme, {@code null} if there is none.
+	 */
+	public static DeliverySink forScheme(String scheme) {
+		Jenkins jenkins = Jenkins.getInstance();
+		if (jenkins == null || scheme == null) {
+			return null;
+		}
+		ExtensionList<DeliverySink> sinks = jenkins.getExtensionList(DeliverySink.class);
+		for (DeliverySink sink : sinks) {
+			if (sink.getScheme().equalsIgnoreCase(scheme)) {
+				return sink;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Base of the built in sinks, which keep one {@link LineStream} per target
+	 * and write each payload as a line.
+	 */
+	abstract static class LineSink extends DeliverySink {
+
+		private final ConcurrentMap<String, LineStream> streams = new ConcurrentHashMap<String, LineStream>();
+
+		/**
+		 * Key of the stream a URL writes to.
+		 */
+		abstract String getTarget(URI uri);
+
+		abstract LineStream open(URI uri);
+
+		@Override
+		public void validate(URI uri) {
+			if (Utils.isEmpty(getTarget(uri))) {
+				throw new IllegalArgumentException(String.format("No target in '%s'", uri));
+			}
+		}
+
+		@Override
+		public void send(URI uri, Payload payload, int timeout) throws IOException {
+			if (payload.getContentEncoding() != null || !isText(payload.getContentType())) {
+				throw new IllegalArgumentException(String.format(
+						"Only uncompressed JSON or text payloads can be written to %s, not %s", uri,
+						payload.getContentType()));
+			}
+			String target = getTarget(uri);
+			LineStream stream = streams.get(target);
+			if (stream == null) {
+				LineStream created = open(uri);
+				stream = streams.putIfAbsent(target, created);
+				if (stream == null) {
+					stream = created;
+				}
+			}
+			stream.write(payload.getData(), timeout);
+		}
+
+		private static boolean isText(String contentType) {
+			String type = contentType == null ? "" : contentType.toLowerCase();
+			return type.contains("json") || type.startsWith("text/");
+		}
+	}
+}
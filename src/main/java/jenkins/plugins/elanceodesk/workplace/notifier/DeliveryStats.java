@@ -0,0 +1,311 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Live delivery state per endpoint, shown by {@link DeliveryDashboard}.
+ * <p>
+ * {@link HttpWorker} updates counters and ring buffers with atomic
+ * operations only; percentiles, rates and health are computed when the page
+ * is rendered.
+ */
+public final class DeliveryStats {
+
+	/**
+	 * Number of recent attempts per endpoint used for latency percentiles and
+	 * the recent success rate.
+	 */
+	static final int WINDOW = Integer.getInteger(DeliveryStats.class.getName() + ".window", 256);
+
+	static final int MAX_FAILURES = Integer.getInteger(DeliveryStats.class.getName() + ".failures", 50);
+
+	/**
+	 * Number of most recent attempts health is judged by.
+	 */
+	private static final int HEALTH_WINDOW = 20;
+
+	private static final ConcurrentMap<String, Endpoint> ENDPOINTS = new ConcurrentHashMap<String, Endpoint>();
+
+	private static final RingBuffer<Failure> FAILURES = new RingBuffer<Failure>(MAX_FAILURES);
+
+	public enum Health {
+		/**
+		 * All recent attempts succeeded.
+		 */
+		HEALTHY,
+
+		/**
+		 * Some recent attempts failed.
+		 */
+		DEGRADED,
+
+		/**
+		 * At least half of the recent attempts failed.
+		 */
+		FAILING
+	}
+
+	private DeliveryStats() {
+	}
+
+	/**
+	 * Scheme, host and port of a URL, the unit stats and limits are kept for.
+	 */
+	public static String endpointOf(String url) {
+		if (url == null) {
+			return "";
+		}
+		try {
+			URI uri = new URI(url);
+			if (uri.getHost() != null) {
+				return uri.getScheme() + "://" + uri.getHost() + (uri.getPort() < 0 ? "" : ":" + uri.getPort());
+			}
+		} catch (URISyntaxException e) {
+			// kept on its own
+		}
+		return url;
+	}
+
+	static Endpoint forUrl(String url) {
+		String name = endpointOf(url);
+		Endpoint endpoint = ENDPOINTS.get(name);
+		if (endpoint == null) {
+			Endpoint created = new Endpoint(name);
+			endpoint = ENDPOINTS.putIfAbsent(name, created);
+			if (endpoint == null) {
+				endpoint = created;
+			}
+		}
+		return endpoint;
+	}
+
+	static void failed(String url, String deliveryId, String reason) {
+		FAILURES.add(new Failure(System.currentTimeMillis(), url, deliveryId, reason));
+	}
+
+	/**
+	 * Endpoints sorted by name.
+	 */
+	public static List<Endpoint> getEndpoints() {
+		List<Endpoint> endpoints = new ArrayList<Endpoint>(ENDPOINTS.values());
+		Collections.sort(endpoints);
+		return endpoints;
+	}
+
+	/**
+	 * Most recent failed attempts, latest first.
+	 */
+	public static List<Failure> getFailures() {
+		return FAILURES.snapshot();
+	}
+
+	/**
+	 * Delivery state of one endpoint.
+	 */
+	public static final class Endpoint implements Comparable<Endpoint> {
+
+		private final String name;
+
+		private final AtomicInteger queued = new AtomicInteger();
+
+		private final AtomicInteger inFlight = new AtomicInteger();
+
+		private final AtomicLong successes = new AtomicLong();
+
+		private final AtomicLong failures = new AtomicLong();
+
+		/**
+		 * Latency of recent attempts in microseconds, negated for failed
+		 * attempts.
+		 */
+		private final AtomicLongArray recent = new AtomicLongArray(WINDOW);
+
+		private final AtomicLong attempts = new AtomicLong();
+
+		private final ConcurrencyLimit limit = new ConcurrencyLimit();
+
+		Endpoint(String name) {
+			this.name = name;
+		}
+
+		void queued() {
+			queued.incrementAndGet();
+		}
+
+		/**
+		 * A queued delivery was started, or stored without being started.
+		 */
+		void dequeued() {
+			queued.decrementAndGet();
+		}
+
+		void attemptStarted() {
+			inFlight.incrementAndGet();
+		}
+
+		void attemptCompleted(long nanos, boolean success) {
+			inFlight.decrementAndGet();
+			(success ? successes : failures).incrementAndGet();
+			long micros = Math.max(1, TimeUnit.NANOSECONDS.toMicros(nanos));
+			recent.set((int) (attempts.getAndIncrement() % WINDOW), success ? micros : -micros);
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * Deliveries waiting for a thread or for their first attempt.
+		 */
+		public int getQueued() {
+			return Math.max(0, queued.get());
+		}
+
+		public int getInFlight() {
+			return Math.max(0, inFlight.get());
+		}
+
+		/**
+		 * Adaptive limit of concurrent deliveries.
+		 */
+		public ConcurrencyLimit getLimit() {
+			return limit;
+		}
+
+		public long getSuccesses() {
+			return successes.get();
+		}
+
+		public long getFailures() {
+			return failures.get();
+		}
+
+		/**
+		 * Percentage of successful attempts among the recent ones.
+		 */
+		public int getSuccessRate() {
+			long[] window = window();
+			if (window.length == 0) {
+				return 100;
+			}
+			int ok = 0;
+			for (long value : window) {
+				if (value > 0) {
+					ok++;
+				}
+			}
+			return (int) (ok * 100L / window.length);
+		}
+
+		public Health getHealth() {
+			long[] window = window();
+			int from = Math.max(0, window.length - HEALTH_WINDOW);
+			int failed = 0;
+			for (int i = from; i < window.length; i++) {
+				if (window[i] < 0) {
+					failed++;
+				}
+			}
+			int count = window.length - from;
+			if (failed == 0) {
+				return Health.HEALTHY;
+			}
+			return failed * 2 >= count ? Health.FAILING : Health.DEGRADED;
+		}
+
+		/**
+		 * Latency percentile of the recent attempts in milliseconds.
+		 */
+		public double getLatency(int percentile) {
+			long[] window = window();
+			if (window.length == 0) {
+				return 0;
+			}
+			for (int i = 0; i < window.length; i++) {
+				window[i] = Math.abs(window[i]);
+			}
+			Arrays.sort(window);
+			int index = (int) Math.ceil(percentile / 100d * window.length) - 1;
+			return window[Math.max(0, Math.min(index, window.length - 1))] / 1000d;
+		}
+
+		/**
+		 * Recent attempts, oldest first.
+		 */
+		private long[] window() {
+			long end = attempts.get();
+			int size = (int) Math.min(end, WINDOW);
+			long[] window = new long[size];
+			for (int i = 0; i < size; i++) {
+				window[i] = recent.get((int) ((end - size + i) % WINDOW));
+			}
+			return window;
+		}
+
+		public int compareTo(Endpoint o) {
+			return name.compareTo(o.name);
+		}
+	}
+
+	/**
+	 * A failed attempt.
+	 */
+	public static final class Failure {
+
+		private final long time;
+
+		private final String url;
+
+		private final String deliveryId;
+
+		private final String reason;
+
+		Failure(long time, String url, String deliveryId, String reason) {
+			this.time = time;
+			this.url = url;
+			this.deliveryId = deliveryId;
+			this.reason = reason;
+		}
+
+		public Date getTime() {
+			return new Date(time);
+		}
+
+		public String getUrl() {
+			return url;
+		}
+
+		public String getDeliveryId() {
+			return deliveryId;
+		}
+
+		public String getReason() {
+			return reason;
+		}
+	}
+}
@@ -0,0 +1,129 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Addresses of webhook hosts, kept for {@code ttlSeconds}.
+ * <p>
+ * Only the first lookup of a host waits for DNS. Once the addresses are older
+ * than the TTL they are still used while a refresh runs in the background,
+ * and if the refresh fails they keep being used for up to
+ * {@code staleSeconds}, so a slow or failing DNS server does not hold up
+ * deliveries to hosts it answered for before.
+ */
+final class DnsCache {
+
+	private static final Logger LOGGER = Logger.getLogger(DnsCache.class.getName());
+
+	static final long TTL = TimeUnit.SECONDS.toMillis(Integer.getInteger(DnsCache.class.getName() + ".ttlSeconds",
+			60));
+
+	static final long MAX_STALE = TimeUnit.SECONDS.toMillis(Integer.getInteger(DnsCache.class.getName()
+			+ ".staleSeconds", 3600));
+
+	/**
+	 * Delay before a failed refresh is tried again.
+	 */
+	private static final long RETRY_DELAY = TimeUnit.SECONDS.toMillis(5);
+
+	static final DnsCache DEFAULT = new DnsCache(TTL, MAX_STALE, new Executor() {
+		public void execute(Runnable command) {
+			DeliveryService.execute(command);
+		}
+	});
+
+	private final long ttl;
+
+	private final long maxStale;
+
+	private final Executor refresher;
+
+	private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+	DnsCache(long ttl, long maxStale, Executor refresher) {
+		this.ttl = ttl;
+		this.maxStale = Math.max(ttl, maxStale);
+		this.refresher = refresher;
+	}
+
+	/**
+	 * @throws UnknownHostException
+	 *             if the host is looked up for the first time, or its
+	 *             addresses are too stale, and it cannot be resolved
+	 */
+	InetAddress[] resolve(final String host) throws UnknownHostException {
+		long now = System.currentTimeMillis();
+		final Entry entry = entries.get(host);
+		if (entry == null || now - entry.resolved > maxStale) {
+			Entry resolved = new Entry(InetAddress.getAllByName(host), now, now + ttl);
+			entries.put(host, resolved);
+			return resolved.addresses;
+		}
+		if (now >= entry.expires && entry.claimRefresh()) {
+			refresher.execute(new Runnable() {
+				public void run() {
+					refresh(host, entry);
+				}
+			});
+		}
+		return entry.addresses;
+	}
+
+	private void refresh(String host, Entry stale) {
+		long now = System.currentTimeMillis();
+		try {
+			entries.replace(host, stale, new Entry(InetAddress.getAllByName(host), now, now + ttl));
+		} catch (UnknownHostException e) {
+			LOGGER.log(Level.FINE, "Unable to refresh the addresses of " + host + ", using the previous ones", e);
+			entries.replace(host, stale, new Entry(stale.addresses, stale.resolved, now + RETRY_DELAY));
+		}
+	}
+
+	private static final class Entry {
+
+		private final InetAddress[] addresses;
+
+		/**
+		 * When the addresses were looked up.
+		 */
+		private final long resolved;
+
+		private final long expires;
+
+		private boolean refreshing;
+
+		Entry(InetAddress[] addresses, long resolved, long expires) {
+			this.addresses = addresses;
+			this.resolved = resolved;
+			this.expires = expires;
+		}
+
+		synchronized boolean claimRefresh() {
+			if (refreshing) {
+				return false;
+			}
+			refreshing = true;
+			return true;
+		}
+	}
+}
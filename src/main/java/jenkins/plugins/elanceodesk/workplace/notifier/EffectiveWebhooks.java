@@ -0,0 +1,144 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import hudson.model.Job;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import jenkins.model.Jenkins;
+
+/**
+ * Webhooks a job notifies: its own webhooks followed by the global webhooks
+ * that apply to it, i.e. those without a folder and those of the folders it
+ * is in.
+ * <p>
+ * Global webhooks are changed once, in the global configuration, and take
+ * effect for every job without saving any job. The list of each job is
+ * cached until the global webhooks change, which bumps a generation counter,
+ * or the job's property or full name changes. Entries only keep a weak
+ * reference to the property, whose owner is the job the entry is keyed by,
+ * so that deleted jobs can be collected.
+ * <p>
+ * A job's own webhooks that point at a {@link DeliverySink} are ignored:
+ * sinks reach the controller's files and local services, so they are only
+ * honoured from the global configuration, also when a job's configuration
+ * file was edited directly.
+ */
+@SuppressWarnings("rawtypes")
+final class EffectiveWebhooks {
+
+	private static final Logger LOGGER = Logger.getLogger(EffectiveWebhooks.class.getName());
+
+	private static final AtomicLong GENERATION = new AtomicLong();
+
+	private static final Map<Job, Entry> CACHE = Collections.synchronizedMap(new WeakHashMap<Job, Entry>());
+
+	private EffectiveWebhooks() {
+	}
+
+	/**
+	 * Drops the cached lists, e.g. because the global webhooks changed.
+	 */
+	static void invalidate() {
+		GENERATION.incrementAndGet();
+	}
+
+	static List<Webhook> of(Job job) {
+		long generation = GENERATION.get();
+		WebhookJobProperty property = (WebhookJobProperty) job.getProperty(WebhookJobProperty.class);
+		String fullName = job.getFullName();
+		Entry entry = CACHE.get(job);
+		if (entry != null && entry.generation == generation && entry.property.get() == property
+				&& entry.fullName.equals(fullName)) {
+			return entry.webhooks;
+		}
+		List<Webhook> webhooks = resolve(fullName, property, getGlobal());
+		CACHE.put(job, new Entry(generation, property, fullName, webhooks));
+		return webhooks;
+	}
+
+	/**
+	 * Own webhooks first. A global webhook with the URL of one of the job's
+	 * webhooks is overridden by it.
+	 */
+	static List<Webhook> resolve(String fullName, WebhookJobProperty property, List<Webhook> global) {
+		List<Webhook> webhooks = new ArrayList<Webhook>();
+		Set<String> urls = new HashSet<String>();
+		if (property != null) {
+			for (Webhook webhook : property.getWebhooks()) {
+				if (isSink(webhook)) {
+					LOGGER.log(Level.WARNING, "Ignoring webhook {0} of {1}, sinks can only be set up globally",
+							new Object[] { webhook.getUrl(), fullName });
+					continue;
+				}
+				webhooks.add(webhook);
+				urls.add(webhook.getUrl());
+			}
+			if (property.isSkipInherited()) {
+				return Collections.unmodifiableList(webhooks);
+			}
+		}
+		for (Webhook webhook : global) {
+			if (webhook.appliesTo(fullName) && urls.add(webhook.getUrl())) {
+				webhooks.add(webhook);
+			}
+		}
+		return webhooks.isEmpty() ? Collections.<Webhook> emptyList() : Collections.unmodifiableList(webhooks);
+	}
+
+	private static boolean isSink(Webhook webhook) {
+		try {
+			return webhook.getEndpoint().getSink() != null;
+		} catch (IllegalArgumentException e) {
+			// reported as an invalid URL when it is delivered
+			return false;
+		}
+	}
+
+	static List<Webhook> getGlobal() {
+		Jenkins jenkins = Jenkins.getInstance();
+		WebhookJobPropertyDescriptor descriptor = jenkins == null ? null : jenkins
+				.getDescriptorByType(WebhookJobPropertyDescriptor.class);
+		return descriptor == null ? Collections.<Webhook> emptyList() : descriptor.getTargets();
+	}
+
+	private static final class Entry {
+
+		private final long generation;
+
+		private final WeakReference<WebhookJobProperty> property;
+
+		private final String fullName;
+
+		private final List<Webhook> webhooks;
+
+		Entry(long generation, WebhookJobProperty property, String fullName, List<Webhook> webhooks) {
+			this.generation = generation;
+			this.property = new WeakReference<WebhookJobProperty>(property);
+			this.fullName = fullName;
+			this.webhooks = webhooks;
+		}
+	}
+}
@@ -0,0 +1,94 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import hudson.Extension;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * In memory {@link Outbox} of a single controller. Entries are lost on
+ * restart, but deliveries still go through {@link OutboxWorkers} and their
+ * rate limits.
+ */
+@Extension
+public class EmbeddedOutbox extends Outbox {
+
+	/**
+	 * Number of delivery ids remembered for deduplication.
+	 */
+	private static final int MAX_IDS = 10000;
+
+	private final PriorityQueue<OutboxEntry> pending = new PriorityQueue<OutboxEntry>(64,
+			new Comparator<OutboxEntry>() {
+				public int compare(OutboxEntry o1, OutboxEntry o2) {
+					return o1.getNotBefore() < o2.getNotBefore() ? -1 : o1.getNotBefore() == o2.getNotBefore() ? 0
+							: 1;
+				}
+			});
+
+	private final Map<String, Boolean> ids = new LinkedHashMap<String, Boolean>() {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+			return size() > MAX_IDS;
+		}
+	};
+
+	private int inflight;
+
+	@Override
+	public String getId() {
+		return "embedded";
+	}
+
+	@Override
+	public synchronized boolean offer(OutboxEntry entry) {
+		if (ids.put(entry.getDeliveryId(), Boolean.TRUE) != null) {
+			return false;
+		}
+		pending.add(entry);
+		return true;
+	}
+
+	@Override
+	public synchronized OutboxEntry poll() {
+		OutboxEntry entry = pending.peek();
+		if (entry == null || entry.getNotBefore() > System.currentTimeMillis()) {
+			return null;
+		}
+		inflight++;
+		return pending.poll();
+	}
+
+	@Override
+	public synchronized void complete(OutboxEntry entry) {
+		inflight--;
+	}
+
+	@Override
+	public synchronized void release(OutboxEntry claimed, OutboxEntry next) {
+		inflight--;
+		pending.add(next);
+	}
+
+	@Override
+	public synchronized int size() {
+		return pending.size() + inflight;
+	}
+}
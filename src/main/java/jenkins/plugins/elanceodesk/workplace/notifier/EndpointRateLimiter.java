@@ -0,0 +1,73 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Token bucket per endpoint. Buckets start full, so an idle endpoint gets a
+ * burst of {@code burst} requests before the rate applies.
+ */
+final class EndpointRateLimiter {
+
+	private final double permitsPerMilli;
+
+	private final double burst;
+
+	private final ConcurrentMap<String, Bucket> buckets = new ConcurrentHashMap<String, Bucket>();
+
+	EndpointRateLimiter(double permitsPerSecond, int burst) {
+		this.permitsPerMilli = permitsPerSecond / 1000d;
+		this.burst = Math.max(1, burst);
+	}
+
+	/**
+	 * Takes a permit for the endpoint if one is available.
+	 *
+	 * @return {@code 0} if a permit was taken, otherwise the milliseconds
+	 *         until the next permit is available
+	 */
+	long tryAcquire(String endpoint, long now) {
+		Bucket bucket = buckets.get(endpoint);
+		if (bucket == null) {
+			Bucket created = new Bucket(burst, now);
+			bucket = buckets.putIfAbsent(endpoint, created);
+			if (bucket == null) {
+				bucket = created;
+			}
+		}
+		synchronized (bucket) {
+			bucket.tokens = Math.min(burst, bucket.tokens + Math.max(0, now - bucket.updated) * permitsPerMilli);
+			bucket.updated = now;
+			if (bucket.tokens >= 1) {
+				bucket.tokens -= 1;
+				return 0;
+			}
+			return Math.max(1, (long) Math.ceil((1 - bucket.tokens) / permitsPerMilli));
+		}
+	}
+
+	private static final class Bucket {
+
+		private double tokens;
+
+		private long updated;
+
+		Bucket(double tokens, long updated) {
+			this.tokens = tokens;
+			this.updated = updated;
+		}
+	}
+}
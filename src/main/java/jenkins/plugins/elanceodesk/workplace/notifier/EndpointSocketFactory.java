@@ -0,0 +1,84 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+import org.apache.commons.httpclient.params.HttpConnectionParams;
+import org.apache.commons.httpclient.protocol.Protocol;
+import org.apache.commons.httpclient.protocol.ProtocolSocketFactory;
+import org.apache.commons.httpclient.protocol.SecureProtocolSocketFactory;
+
+/**
+ * Connects to the addresses the {@link DnsCache} has for a host, trying them
+ * in order until one accepts the connection.
+ */
+class EndpointSocketFactory implements ProtocolSocketFactory {
+
+	public Socket createSocket(String host, int port) throws IOException {
+		return createSocket(host, port, null, 0, null);
+	}
+
+	public Socket createSocket(String host, int port, InetAddress localAddress, int localPort) throws IOException {
+		return createSocket(host, port, localAddress, localPort, null);
+	}
+
+	public Socket createSocket(String host, int port, InetAddress localAddress, int localPort,
+			HttpConnectionParams params) throws IOException {
+		int timeout = params == null ? 0 : params.getConnectionTimeout();
+		IOException failure = null;
+		for (InetAddress address : DnsCache.DEFAULT.resolve(host)) {
+			Socket socket = new Socket();
+			try {
+				if (localAddress != null) {
+					socket.bind(new InetSocketAddress(localAddress, localPort));
+				}
+				socket.connect(new InetSocketAddress(address, port), timeout);
+				return socket;
+			} catch (IOException e) {
+				socket.close();
+				failure = e;
+			}
+		}
+		throw failure;
+	}
+
+	/**
+	 * Connects the same way and layers TLS over the connection with the
+	 * registered https socket factory, so that its trust settings and the
+	 * host name it checks still apply.
+	 */
+	static final class Secure extends EndpointSocketFactory implements SecureProtocolSocketFactory {
+
+		@Override
+		public Socket createSocket(String host, int port, InetAddress localAddress, int localPort,
+				HttpConnectionParams params) throws IOException {
+			Socket socket = super.createSocket(host, port, localAddress, localPort, params);
+			try {
+				return createSocket(socket, host, port, true);
+			} catch (IOException e) {
+				socket.close();
+				throw e;
+			}
+		}
+
+		public Socket createSocket(Socket socket, String host, int port, boolean autoClose) throws IOException {
+			ProtocolSocketFactory registered = Protocol.getProtocol("https").getSocketFactory();
+			return ((SecureProtocolSocketFactory) registered).createSocket(socket, host, port, autoClose);
+		}
+	}
+}
@@ -0,0 +1,257 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import hudson.Extension;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import jenkins.model.Jenkins;
+
+/**
+ * {@link Outbox} kept in a directory, by default {@code workplace-outbox} in
+ * the Jenkins home. Pointing the {@code dir} system property of several
+ * controllers at the same shared directory gives them one outbox.
+ * <p>
+ * Only atomic file system operations coordinate the controllers: an id
+ * marker created with {@link File#createNewFile()} deduplicates entries, and
+ * a worker claims an entry by renaming it from {@code pending} to
+ * {@code inflight}. Pending file names start with the due time, so listing
+ * them in order yields the entries in the order they are due. Claims that are
+ * not settled within {@link #LEASE} are handed to the next worker.
+ * <p>
+ * The controller delivering an entry signs it with the secret of the job of
+ * the same name in its own configuration, see
+ * {@link OutboxEntry#resolveSecret()}.
+ */
+@Extension
+public class FileOutbox extends Outbox {
+
+	private static final Logger LOGGER = Logger.getLogger(FileOutbox.class.getName());
+
+	private static final String DIR = System.getProperty(FileOutbox.class.getName() + ".dir");
+
+	/**
+	 * How long a claimed entry may stay in flight before another worker takes
+	 * it over.
+	 */
+	static final long LEASE = TimeUnit.MINUTES.toMillis(Integer.getInteger(FileOutbox.class.getName()
+			+ ".leaseMinutes", 10));
+
+	/**
+	 * How long delivery ids are remembered for deduplication.
+	 */
+	static final long RETENTION = TimeUnit.HOURS.toMillis(Integer.getInteger(FileOutbox.class.getName()
+			+ ".retentionHours", 24));
+
+	private static final String SUFFIX = ".entry";
+
+	private static final long HOUSEKEEPING_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+	private final Deque<String> candidates = new ArrayDeque<String>();
+
+	private volatile File root;
+
+	private long nextHousekeeping;
+
+	public FileOutbox() {
+	}
+
+	FileOutbox(File root) {
+		this.root = root;
+	}
+
+	@Override
+	public String getId() {
+		return "file";
+	}
+
+	@Override
+	public boolean offer(OutboxEntry entry) throws IOException {
+		File marker = new File(dir("ids"), entry.getDeliveryId());
+		if (!marker.createNewFile()) {
+			return false;
+		}
+		boolean written = false;
+		try {
+			write(entry, new File(dir("pending"), fileName(entry)));
+			written = true;
+		} finally {
+			if (!written) {
+				// a later offer of the delivery must not be taken for a duplicate
+				marker.delete();
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public synchronized OutboxEntry poll() throws IOException {
+		long now = System.currentTimeMillis();
+		if (now >= nextHousekeeping) {
+			nextHousekeeping = now + HOUSEKEEPING_INTERVAL;
+			housekeeping(now);
+		}
+		if (candidates.isEmpty()) {
+			String[] names = dir("pending").list();
+			if (names == null) {
+				return null;
+			}
+			Arrays.sort(names);
+			candidates.addAll(Arrays.asList(names));
+		}
+		while (!candidates.isEmpty()) {
+			String name = candidates.peekFirst();
+			if (!name.endsWith(SUFFIX)) {
+				candidates.pollFirst();
+				continue;
+			}
+			if (dueTime(name) > now) {
+				// later entries are due even later, list again next time
+				candidates.clear();
+				return null;
+			}
+			candidates.pollFirst();
+			File claimed = new File(dir("inflight"), name);
+			if (!new File(dir("pending"), name).renameTo(claimed)) {
+				// claimed by another worker
+				continue;
+			}
+			claimed.setLastModified(now);
+			try {
+				return read(claimed);
+			} catch (IOException e) {
+				LOGGER.log(Level.WARNING, "Unable to read outbox entry " + claimed + ", moving it aside", e);
+				claimed.renameTo(new File(dir("dead"), name));
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public void complete(OutboxEntry entry) throws IOException {
+		File claimed = new File(dir("inflight"), fileName(entry));
+		if (!claimed.delete() && claimed.exists()) {
+			throw new IOException("Unable to delete " + claimed);
+		}
+	}
+
+	@Override
+	public void release(OutboxEntry claimed, OutboxEntry next) throws IOException {
+		write(next, new File(dir("pending"), fileName(next)));
+		complete(claimed);
+	}
+
+	@Override
+	public int size() {
+		return count("pending") + count("inflight");
+	}
+
+	/**
+	 * Hands expired claims back and forgets old delivery ids.
+	 */
+	private void housekeeping(long now) throws IOException {
+		File[] inflight = dir("inflight").listFiles();
+		if (inflight != null) {
+			for (File file : inflight) {
+				if (now - file.lastModified() > LEASE) {
+					LOGGER.log(Level.FINE, "Claim of outbox entry {0} expired", file.getName());
+					file.renameTo(new File(dir("pending"), file.getName()));
+				}
+			}
+		}
+		File[] ids = dir("ids").listFiles();
+		if (ids != null) {
+			for (File file : ids) {
+				if (now - file.lastModified() > RETENTION) {
+					file.delete();
+				}
+			}
+		}
+	}
+
+	private void write(OutboxEntry entry, File target) throws IOException {
+		File temp = File.createTempFile(entry.getDeliveryId(), ".tmp", dir("tmp"));
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(temp));
+		try {
+			entry.writeTo(out);
+		} finally {
+			out.close();
+		}
+		if (!temp.renameTo(target)) {
+			temp.delete();
+			throw new IOException("Unable to move outbox entry to " + target);
+		}
+	}
+
+	private static OutboxEntry read(File file) throws IOException {
+		InputStream in = new BufferedInputStream(new FileInputStream(file));
+		try {
+			return OutboxEntry.readFrom(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Zero padded due time followed by the delivery id and attempt.
+	 */
+	private static String fileName(OutboxEntry entry) {
+		return String.format("%016x-%s-%d%s", entry.getNotBefore(), entry.getDeliveryId(), entry.getAttempts(),
+				SUFFIX);
+	}
+
+	private static long dueTime(String name) {
+		try {
+			return Long.parseLong(name.substring(0, 16), 16);
+		} catch (RuntimeException e) {
+			return 0;
+		}
+	}
+
+	private int count(String name) {
+		String[] names = new File(getRoot(), name).list();
+		return names == null ? 0 : names.length;
+	}
+
+	private File dir(String name) throws IOException {
+		File dir = new File(getRoot(), name);
+		if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+			throw new IOException("Unable to create " + dir);
+		}
+		return dir;
+	}
+
+	private File getRoot() {
+		File dir = root;
+		if (dir == null) {
+			dir = DIR != null ? new File(DIR) : new File(Jenkins.getInstance().getRootDir(), "workplace-outbox");
+			root = dir;
+		}
+		return dir;
+	}
+}
@@ -14,19 +14,24 @@
 package jenkins.plugins.elanceodesk.workplace.notifier;
 
 import hudson.ProxyConfiguration;
+import hudson.util.Secret;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintStream;
-import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.util.UUID;
 
 import jenkins.model.Jenkins;
 
+import org.apache.commons.httpclient.Header;
 import org.apache.commons.httpclient.HttpClient;
-import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
 import org.apache.commons.httpclient.UsernamePasswordCredentials;
 import org.apache.commons.httpclient.auth.AuthScope;
+import org.apache.commons.httpclient.methods.ByteArrayRequestEntity;
 import org.apache.commons.httpclient.methods.PostMethod;
 import org.apache.commons.httpclient.methods.RequestEntity;
-import org.apache.commons.httpclient.methods.StringRequestEntity;
 
 /**
  * 
@@ -35,64 +40,401 @@ import org.apache.commons.httpclient.methods.StringRequestEntity;
  */
 public class HttpWorker implements Runnable {
 
+	static final String RETRY_AFTER_HEADER = "Retry-After";
+
+	static final String CONTENT_ENCODING_HEADER = "Content-Encoding";
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * Number of bytes of an unsuccessful response that are kept for the build log.
+	 */
+	static final int RESPONSE_CAPTURE_BYTES = Integer.getInteger(HttpWorker.class.getName()
+			+ ".responseCaptureBytes", 1024);
+
+	/**
+	 * Number of response bytes read in order to reuse the connection. Longer
+	 * responses are aborted, which closes the connection instead.
+	 */
+	static final int RESPONSE_DRAIN_BYTES = Integer.getInteger(HttpWorker.class.getName() + ".responseDrainBytes",
+			64 * 1024);
+
+	private static final ThreadLocal<byte[]> RESPONSE_BUFFER = new ThreadLocal<byte[]>() {
+		@Override
+		protected byte[] initialValue() {
+			return new byte[RESPONSE_CAPTURE_BYTES + 4096];
+		}
+	};
+
+	private static final MultiThreadedHttpConnectionManager CONNECTION_MANAGER = new MultiThreadedHttpConnectionManager();
+
+	static {
+		CONNECTION_MANAGER.getParams().setDefaultMaxConnectionsPerHost(
+				Integer.getInteger(HttpWorker.class.getName() + ".maxConnectionsPerHost", 20));
+		CONNECTION_MANAGER.getParams().setMaxTotalConnections(
+				Integer.getInteger(HttpWorker.class.getName() + ".maxTotalConnections", 100));
+	}
+
 	private PrintStream logger;
 
 	private String url;
 
-	private String data;
+	/**
+	 * Parsed URL, {@code null} if the URL is invalid.
+	 */
+	private final WebhookEndpoint endpoint;
+
+	private byte[] data;
+
+	private String contentType;
+
+	private String contentEncoding;
 
 	private int timeout;
 	
 	private int retries;
 
+	private Secret secret;
+
+	private String deliveryId;
+
+	private ResponsePolicy responsePolicy;
+
+	/**
+	 * Whether the payload must be signed but this controller does not have
+	 * the secret.
+	 */
+	private boolean secretUnavailable;
+
+	private volatile boolean delivered;
+
+	private volatile boolean terminal;
+
+	private volatile long retryDelay;
+
+	private final DeliveryStats.Endpoint stats;
+
 	public HttpWorker(String url, String data, int timeout, int retries, PrintStream logger) {
+		this(url, endpoint(null, url), new Payload(data.getBytes(UTF_8), PayloadFormat.JSON.getContentType()),
+				timeout, null, UUID.randomUUID().toString(), ResponsePolicy.DEFAULT, retries, logger);
+	}
+
+	/**
+	 * @param payload
+	 *            encoded payload. It is posted and signed as is, so the same
+	 *            buffer can be shared by all workers of one notification.
+	 * @param deliveryId
+	 *            id sent with every attempt, see {@link DeliveryId}
+	 */
+	public HttpWorker(Webhook webhook, Payload payload, String deliveryId, int retries, PrintStream logger) {
+		this(webhook.getUrl(), endpoint(webhook, webhook.getUrl()), payload, webhook.getTimeout(), webhook
+				.getSecret(), deliveryId, webhook.getResponsePolicy(), retries, logger);
+	}
+
+	/**
+	 * Posts an outbox entry, signed with the secret the webhook has now and
+	 * the time of the attempt.
+	 */
+	HttpWorker(OutboxEntry entry, PrintStream logger) {
+		this(entry.getUrl(), endpoint(null, entry.getUrl()), new Payload(entry.getData(), entry.getContentType(),
+				entry.getContentEncoding()), entry.getTimeout(), entry.resolveSecret(), entry.getDeliveryId(),
+				entry.getResponsePolicy(), 1, logger);
+		this.secretUnavailable = entry.getSecretSource() != null && secret == null;
+	}
+
+	private HttpWorker(String url, WebhookEndpoint endpoint, Payload payload, int timeout, Secret secret,
+			String deliveryId, ResponsePolicy responsePolicy, int retries, PrintStream logger) {
 		this.url = url;
-		this.data = data;
+		this.endpoint = endpoint;
+		this.data = payload.getData();
+		this.contentType = payload.getContentType();
+		this.contentEncoding = payload.getContentEncoding();
 		this.timeout = timeout;
+		this.secret = secret;
+		this.deliveryId = deliveryId;
+		this.responsePolicy = responsePolicy;
 		this.logger = logger;
 		this.retries = retries;
+		this.stats = DeliveryStats.forUrl(url);
+	}
+
+	/**
+	 * The webhook's parsed URL, or the URL parsed once per worker for other
+	 * callers.
+	 */
+	private static WebhookEndpoint endpoint(Webhook webhook, String url) {
+		try {
+			return webhook != null ? webhook.getEndpoint() : WebhookEndpoint.of(url);
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
 	}
 
 	public void run() {
 		int tried = 0;
 		boolean success = false;
+		boolean terminal = false;
+		if (endpoint == null) {
+			invalidUrl();
+			return;
+		}
+		if (secretUnavailable) {
+			String error = "The webhook's secret is not configured on this controller, unable to sign the payload";
+			DeliveryStats.failed(url, deliveryId, error);
+			DeliveryLog.event(DeliveryLog.Event.FAILED, logger).url(url).deliveryId(deliveryId).detail(error).log();
+			return;
+		}
+		if (endpoint.getSink() != null) {
+			runSink(endpoint.getSink());
+			return;
+		}
 		HttpClient client= getHttpClient();
 		client.getParams().setConnectionManagerTimeout(timeout);
+		endpoint.configure(client.getHostConfiguration());
+		RequestEntity requestEntity = new ByteArrayRequestEntity(data, contentType);
 		do {
 			tried++;
-			RequestEntity requestEntity;
-			try {
-				requestEntity = new StringRequestEntity(data, "application/json", "UTF-8");
-			} catch (UnsupportedEncodingException e) {
-				e.printStackTrace(logger);
-				break;
-			}
-			logger.println(String.format("Posting data to webhook - %s. Already Tried %s times", url, tried));
-			PostMethod post = new PostMethod(url);
+			long retryDelay = 0;
+			DeliveryLog.event(DeliveryLog.Event.ATTEMPT, logger).url(url).deliveryId(deliveryId).attempt(tried).log();
+			PostMethod post = endpoint.newPost();
+			boolean attemptSucceeded = false;
+			boolean overload = true;
+			long start = System.nanoTime();
+			stats.attemptStarted();
 			try {
 		        post.setRequestEntity(requestEntity);
+		        post.getParams().setSoTimeout(timeout);
+		        addHeaders(post);
 		        int responseCode = client.executeMethod(post);
-		        if(responseCode != HttpStatus.SC_OK) {
-		        	String response = post.getResponseBodyAsString();
-		        	logger.println(String.format("Posting data to - %s may have failed. Webhook responded with status code - %s", url, responseCode));
-		        	logger.println(String.format("Message from webhook - %s", response));
-		        	
+		        ResponsePolicy.Outcome outcome = responsePolicy.classify(responseCode);
+		        if(outcome != ResponsePolicy.Outcome.SUCCESS) {
+		        	DeliveryStats.failed(url, deliveryId, "HTTP " + responseCode);
+		        	String response = readResponse(post);
+		        	DeliveryLog.event(DeliveryLog.Event.REJECTED, logger).url(url).deliveryId(deliveryId).attempt(tried)
+		        			.status(responseCode).elapsed(System.nanoTime() - start).detail(response).log();
+		        	if (outcome == ResponsePolicy.Outcome.TERMINAL) {
+		        		terminal = true;
+		        		overload = false;
+		        		DeliveryLog.event(DeliveryLog.Event.NOT_RETRYABLE, logger).url(url).deliveryId(deliveryId)
+		        				.status(responseCode).log();
+		        	} else {
+		        		retryDelay = getRetryAfter(post);
+		        		this.retryDelay = retryDelay;
+		        	}
 		        } else {
 		        	success = true;
-		        	logger.println(String.format("Posting data to webhook - %s completed ", url));
+		        	attemptSucceeded = true;
+		        	overload = false;
+		        	discardResponse(post);
+		        	DeliveryLog.event(DeliveryLog.Event.DELIVERED, logger).url(url).deliveryId(deliveryId).attempt(tried)
+		        			.status(responseCode).elapsed(System.nanoTime() - start).log();
 		        }
 			} catch (Exception e) {
-				logger.println(String.format("Failed to post data to webhook - %s", url));
-				e.printStackTrace(logger);
+				DeliveryStats.failed(url, deliveryId, e.toString());
+				DeliveryLog.event(DeliveryLog.Event.FAILED, logger).url(url).deliveryId(deliveryId).attempt(tried)
+						.elapsed(System.nanoTime() - start).error(e).log();
 			} finally {
 				 post.releaseConnection();
+				 long end = System.nanoTime();
+				 stats.attemptCompleted(end - start, attemptSucceeded);
+				 stats.getLimit().sample(start, end, overload);
+			}
+			if (retryDelay > 0 && tried < retries) {
+				try {
+					Thread.sleep(retryDelay);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+		} while(tried < retries && !success && !terminal && !Thread.currentThread().isInterrupted());
+		this.delivered = success;
+		this.terminal = terminal;
+	}
+
+	/**
+	 * Sends the payload to a sink instead of posting it, with the same
+	 * retries, stats and limits.
+	 */
+	private void runSink(DeliverySink sink) {
+		Payload payload = new Payload(data, contentType, contentEncoding);
+		int tried = 0;
+		boolean success = false;
+		boolean terminal = false;
+		do {
+			tried++;
+			DeliveryLog.event(DeliveryLog.Event.ATTEMPT, logger).url(url).deliveryId(deliveryId).attempt(tried).log();
+			boolean overload = true;
+			long start = System.nanoTime();
+			stats.attemptStarted();
+			try {
+				sink.send(endpoint.getUri(), payload, timeout);
+				success = true;
+				overload = false;
+				DeliveryLog.event(DeliveryLog.Event.DELIVERED, logger).url(url).deliveryId(deliveryId)
+						.attempt(tried).elapsed(System.nanoTime() - start).log();
+			} catch (IllegalArgumentException e) {
+				terminal = true;
+				overload = false;
+				DeliveryStats.failed(url, deliveryId, e.getMessage());
+				DeliveryLog.event(DeliveryLog.Event.FAILED, logger).url(url).deliveryId(deliveryId).attempt(tried)
+						.error(e).log();
+			} catch (IOException e) {
+				DeliveryStats.failed(url, deliveryId, e.toString());
+				DeliveryLog.event(DeliveryLog.Event.FAILED, logger).url(url).deliveryId(deliveryId).attempt(tried)
+						.elapsed(System.nanoTime() - start).error(e).log();
+			} finally {
+				long end = System.nanoTime();
+				stats.attemptCompleted(end - start, success);
+				stats.getLimit().sample(start, end, overload);
+			}
+		} while (tried < retries && !success && !terminal && !Thread.currentThread().isInterrupted());
+		this.delivered = success;
+		this.terminal = terminal;
+	}
+
+	/**
+	 * Gives up on a URL that cannot be posted to, retrying would not help.
+	 */
+	private void invalidUrl() {
+		IllegalArgumentException error;
+		try {
+			WebhookEndpoint.parse(url);
+			error = new IllegalArgumentException(url);
+		} catch (IllegalArgumentException e) {
+			error = e;
+		}
+		DeliveryStats.failed(url, deliveryId, error.getMessage());
+		DeliveryLog.event(DeliveryLog.Event.FAILED, logger).url(url).deliveryId(deliveryId).error(error).log();
+		this.terminal = true;
+	}
+
+	/**
+	 * Whether the webhook accepted the payload, once {@link #run()} returned.
+	 */
+	public boolean isDelivered() {
+		return delivered;
+	}
+
+	/**
+	 * Whether the webhook rejected the payload with a status code that is not
+	 * retried, once {@link #run()} returned.
+	 */
+	/**
+	 * Whether the payload was not sent because it must be signed and this
+	 * controller does not have the secret. Another controller, or this one
+	 * once the secret is configured, may still deliver it.
+	 */
+	public boolean isSecretUnavailable() {
+		return secretUnavailable;
+	}
+
+	public boolean isTerminal() {
+		return terminal;
+	}
+
+	/**
+	 * Delay the webhook asked for through {@code Retry-After} in its last
+	 * response, {@code 0} if none.
+	 */
+	public long getRetryDelay() {
+		return retryDelay;
+	}
+
+	/**
+	 * Drains the response through a small per thread buffer so that the
+	 * connection can go back to the pool. Only the first
+	 * {@link #RESPONSE_CAPTURE_BYTES} bytes are kept. Responses longer than
+	 * {@link #RESPONSE_DRAIN_BYTES} are aborted instead of being read to the end.
+	 *
+	 * @return the captured prefix of the response
+	 */
+	private String readResponse(PostMethod post) throws IOException {
+		InputStream in = post.getResponseBodyAsStream();
+		if (in == null) {
+			return "";
+		}
+		byte[] buffer = RESPONSE_BUFFER.get();
+		int captured = 0;
+		long total = 0;
+		boolean drained = false;
+		while (total <= RESPONSE_DRAIN_BYTES) {
+			int read = captured < RESPONSE_CAPTURE_BYTES
+					? in.read(buffer, captured, RESPONSE_CAPTURE_BYTES - captured)
+					: in.read(buffer, RESPONSE_CAPTURE_BYTES, buffer.length - RESPONSE_CAPTURE_BYTES);
+			if (read == -1) {
+				drained = true;
+				break;
 			}
-		} while(tried < retries && !success);
-		
+			total += read;
+			if (captured < RESPONSE_CAPTURE_BYTES) {
+				captured += read;
+			}
+		}
+		if (!drained) {
+			post.abort();
+		}
+		String response = new String(buffer, 0, captured, getCharset(post));
+		return total > captured ? response + "... (truncated)" : response;
+	}
+
+	/**
+	 * Drains a successful response. Failing to do so only costs the connection.
+	 */
+	private void discardResponse(PostMethod post) {
+		try {
+			readResponse(post);
+		} catch (IOException e) {
+			post.abort();
+		}
+	}
+
+	private static Charset getCharset(PostMethod post) {
+		try {
+			return Charset.forName(post.getResponseCharSet());
+		} catch (IllegalArgumentException e) {
+			return UTF_8;
+		}
+	}
+
+	/**
+	 * Delay requested through the {@code Retry-After} header in delta
+	 * seconds, capped at the webhook timeout.
+	 */
+	private long getRetryAfter(PostMethod post) {
+		Header header = post.getResponseHeader(RETRY_AFTER_HEADER);
+		if (header == null) {
+			return 0;
+		}
+		try {
+			long delay = Long.parseLong(header.getValue().trim()) * 1000L;
+			return Math.max(0, Math.min(delay, timeout));
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Adds delivery headers and, if the webhook has a secret, the payload
+	 * signature. The timestamp is taken per attempt so that retries stay
+	 * within the receiver's replay window.
+	 */
+	private void addHeaders(PostMethod post) {
+		post.setRequestHeader(PayloadSigner.DELIVERY_HEADER, deliveryId);
+		post.setRequestHeader(DeliveryId.IDEMPOTENCY_KEY_HEADER, deliveryId);
+		if (contentEncoding != null) {
+			post.setRequestHeader(CONTENT_ENCODING_HEADER, contentEncoding);
+		}
+		if (secret != null) {
+			String timestamp = Long.toString(System.currentTimeMillis() / 1000L);
+			post.setRequestHeader(PayloadSigner.TIMESTAMP_HEADER, timestamp);
+			post.setRequestHeader(PayloadSigner.SIGNATURE_HEADER,
+					PayloadSigner.sign(Secret.toString(secret), timestamp, data));
+		}
 	}
 
 	private HttpClient getHttpClient() {
-		HttpClient client = new HttpClient();
+		HttpClient client = new HttpClient(CONNECTION_MANAGER);
 		if (Jenkins.getInstance() != null) {
 			ProxyConfiguration proxy = Jenkins.getInstance().proxy;
 			if (proxy != null) {
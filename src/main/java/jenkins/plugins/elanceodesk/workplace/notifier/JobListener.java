@@ -16,6 +16,7 @@ package jenkins.plugins.elanceodesk.workplace.notifier;
 import hudson.Extension;
 import hudson.model.TaskListener;
 import hudson.model.AbstractBuild;
+import hudson.model.Run;
 import hudson.model.listeners.RunListener;
 
 /**
@@ -26,17 +27,44 @@ import hudson.model.listeners.RunListener;
  */
 @SuppressWarnings("rawtypes")
 @Extension
-public class JobListener extends RunListener<AbstractBuild> {
+public class JobListener extends RunListener<Run> {
 
 	/**
 	 * Default Constructor
 	 */
     public JobListener() {
-        super(AbstractBuild.class);
+        super(Run.class);
     }
 
     @Override
-    public void onCompleted(AbstractBuild r, TaskListener listener) {
-        Phase.COMPLETED.handle(r, listener);
+    public void onStarted(Run r, TaskListener listener) {
+        if (r instanceof AbstractBuild) {
+            if (isStartedHere(r)) {
+                Phase.STARTED.handle(r, listener);
+            }
+        } else {
+            Phase.STARTED.handleAsync(r, listener);
+        }
+        ProgressHeartbeat.register(r, listener);
+    }
+
+    /**
+     * Freestyle and matrix builds of jobs with the job property are notified
+     * from {@link WebhookJobProperty#prebuild} once the workspace is checked
+     * out. Other builds, like Pipeline or those of jobs that only inherit
+     * global or folder webhooks, are notified when they start.
+     */
+    static boolean isStartedHere(Run r) {
+        return !(r instanceof AbstractBuild) || r.getParent().getProperty(WebhookJobProperty.class) == null;
+    }
+
+    @Override
+    public void onCompleted(Run r, TaskListener listener) {
+        ProgressHeartbeat.unregister(r);
+        if (r instanceof AbstractBuild) {
+            Phase.COMPLETED.handle(r, listener);
+        } else {
+            Phase.COMPLETED.handleAsync(r, listener);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,155 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+
+/**
+ * Stream of newline delimited payloads shared by the deliveries to one sink
+ * target.
+ * <p>
+ * Writers append their line and then wait until it is synced, i.e. flushed
+ * and, for files, forced to disk. One writer syncs at a time, covering every
+ * line appended up to then, so concurrent deliveries share a flush and an
+ * fsync instead of paying for one each. Line breaks in a payload are written
+ * as spaces, which keeps JSON intact. If a write or sync fails the stream is
+ * closed, every line written to it since the last sync fails, and the next
+ * write opens it again.
+ */
+abstract class LineStream {
+
+	static final int BUFFER_SIZE = 8192;
+
+	private OutputStream out;
+
+	/**
+	 * Number of lines appended, the last one's sequence number.
+	 */
+	private long appended;
+
+	private long synced;
+
+	/**
+	 * Lines up to this one were written to a stream that failed.
+	 */
+	private long failed;
+
+	private IOException failure;
+
+	private boolean syncing;
+
+	/**
+	 * Opens the underlying stream, buffered.
+	 */
+	protected abstract OutputStream open(int timeout) throws IOException;
+
+	/**
+	 * Makes the lines written so far durable or visible to the reader.
+	 */
+	protected void sync(OutputStream out) throws IOException {
+		out.flush();
+	}
+
+	/**
+	 * Appends the payload and waits until it is synced.
+	 */
+	final void write(byte[] data, int timeout) throws IOException {
+		long line;
+		synchronized (this) {
+			try {
+				if (out == null) {
+					out = open(timeout);
+				}
+				int start = 0;
+				for (int i = 0; i < data.length; i++) {
+					if (data[i] == '\n' || data[i] == '\r') {
+						out.write(data, start, i - start);
+						out.write(' ');
+						start = i + 1;
+					}
+				}
+				out.write(data, start, data.length - start);
+				out.write('\n');
+			} catch (IOException e) {
+				reset(e);
+				throw e;
+			}
+			line = ++appended;
+		}
+		sync(line);
+	}
+
+	private void sync(long line) throws IOException {
+		long target;
+		OutputStream stream;
+		synchronized (this) {
+			while (true) {
+				if (synced >= line) {
+					return;
+				}
+				if (failed >= line) {
+					throw new IOException("Writing the batch failed", failure);
+				}
+				if (!syncing) {
+					break;
+				}
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException();
+				}
+			}
+			syncing = true;
+			target = appended;
+			stream = out;
+		}
+		IOException error = null;
+		try {
+			sync(stream);
+		} catch (IOException e) {
+			error = e;
+		}
+		synchronized (this) {
+			syncing = false;
+			if (error == null) {
+				synced = Math.max(synced, target);
+			} else if (stream == out) {
+				reset(error);
+			}
+			notifyAll();
+		}
+		if (error != null) {
+			throw error;
+		}
+	}
+
+	/**
+	 * Closes the stream, failing every line written to it that is not synced.
+	 */
+	private void reset(IOException error) {
+		failed = appended;
+		failure = error;
+		if (out != null) {
+			try {
+				out.close();
+			} catch (IOException e) {
+				// already failed
+			}
+			out = null;
+		}
+	}
+}
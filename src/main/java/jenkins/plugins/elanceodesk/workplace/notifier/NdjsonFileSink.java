@@ -0,0 +1,126 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import hudson.Extension;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.channels.FileChannel;
+
+/**
+ * Appends payloads as newline delimited JSON to a local file, e.g.
+ * {@code file:///var/lib/consumer/builds.ndjson}.
+ * <p>
+ * A delivery completes once its line is on disk. Concurrent deliveries share
+ * one fsync, see {@link LineStream}. With {@code fsync} set to {@code false}
+ * lines are only flushed to the operating system.
+ * <p>
+ * Files can only be written below the directory set by the administrator
+ * in the {@code directory} system property; without it the sink refuses
+ * every URL.
+ */
+@Extension
+public class NdjsonFileSink extends DeliverySink.LineSink {
+
+	static final boolean FSYNC = !"false".equals(System.getProperty(NdjsonFileSink.class.getName() + ".fsync"));
+
+	/**
+	 * Directory files may be written in, {@code null} if the sink is
+	 * disabled.
+	 */
+	private final File directory;
+
+	public NdjsonFileSink() {
+		this(System.getProperty(NdjsonFileSink.class.getName() + ".directory"));
+	}
+
+	NdjsonFileSink(String directory) {
+		this.directory = Utils.isEmpty(directory) ? null : new File(directory);
+	}
+
+	@Override
+	public String getScheme() {
+		return "file";
+	}
+
+	@Override
+	String getTarget(URI uri) {
+		return uri.getPath();
+	}
+
+	@Override
+	public void validate(URI uri) {
+		super.validate(uri);
+		File parent = resolve(uri).getParentFile();
+		if (!parent.isDirectory()) {
+			throw new IllegalArgumentException(String.format("Directory of '%s' does not exist", uri.getPath()));
+		}
+	}
+
+	/**
+	 * The file a URL points to, with links and {@code ..} resolved.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the file is not below the allowed directory
+	 */
+	File resolve(URI uri) {
+		if (directory == null) {
+			throw new IllegalArgumentException(String.format(
+					"File sinks are disabled, the system property %s.directory is not set",
+					NdjsonFileSink.class.getName()));
+		}
+		try {
+			File file = new File(uri.getPath()).getCanonicalFile();
+			File allowed = directory.getCanonicalFile();
+			for (File parent = file.getParentFile(); parent != null; parent = parent.getParentFile()) {
+				if (parent.equals(allowed)) {
+					return file;
+				}
+			}
+		} catch (IOException e) {
+			throw new IllegalArgumentException(String.format("Unable to resolve '%s'", uri.getPath()), e);
+		}
+		throw new IllegalArgumentException(String.format("'%s' is not in %s, the directory file sinks may write to",
+				uri.getPath(), directory));
+	}
+
+	@Override
+	LineStream open(URI uri) {
+		// checked again, the URL may come from a configuration file
+		final File file = resolve(uri);
+		return new LineStream() {
+			private FileChannel channel;
+
+			@Override
+			protected OutputStream open(int timeout) throws IOException {
+				FileOutputStream out = new FileOutputStream(file, true);
+				channel = out.getChannel();
+				return new BufferedOutputStream(out, BUFFER_SIZE);
+			}
+
+			@Override
+			protected void sync(OutputStream out) throws IOException {
+				out.flush();
+				if (FSYNC) {
+					channel.force(false);
+				}
+			}
+		};
+	}
+}
@@ -0,0 +1,104 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import hudson.ExtensionList;
+import hudson.ExtensionPoint;
+
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import jenkins.model.Jenkins;
+
+/**
+ * Queue of deliveries shared by build controllers and delivery workers.
+ * <p>
+ * In outbox mode {@link Phase} only queues one {@link OutboxEntry} per
+ * webhook and {@link OutboxWorkers} post them, so delivery capacity and rate
+ * limits no longer depend on how many builds a controller runs. The mode is
+ * enabled by setting the {@code backend} system property to the id of an
+ * implementation, {@code file} or {@code embedded}.
+ * <p>
+ * Entries are deduplicated by their delivery id, so a notification queued
+ * twice, e.g. by two controllers sharing a file outbox, is delivered once.
+ */
+public abstract class Outbox implements ExtensionPoint {
+
+	private static final Logger LOGGER = Logger.getLogger(Outbox.class.getName());
+
+	static final String BACKEND = System.getProperty(Outbox.class.getName() + ".backend");
+
+	private static volatile Outbox instance;
+
+	private static volatile boolean unknownBackend;
+
+	/**
+	 * Id the backend is selected by.
+	 */
+	public abstract String getId();
+
+	/**
+	 * Queues an entry unless an entry with the same delivery id is queued, in
+	 * flight or was delivered recently.
+	 *
+	 * @return {@code false} if the entry is a duplicate
+	 */
+	public abstract boolean offer(OutboxEntry entry) throws IOException;
+
+	/**
+	 * Claims the next due entry, which must then be completed or released.
+	 *
+	 * @return {@code null} if no entry is due
+	 */
+	public abstract OutboxEntry poll() throws IOException;
+
+	/**
+	 * Removes a claimed entry that was delivered or given up on.
+	 */
+	public abstract void complete(OutboxEntry entry) throws IOException;
+
+	/**
+	 * Puts a claimed entry back with the state of its next attempt.
+	 */
+	public abstract void release(OutboxEntry claimed, OutboxEntry next) throws IOException;
+
+	/**
+	 * Number of queued and in flight entries.
+	 */
+	public abstract int size();
+
+	/**
+	 * The configured backend, {@code null} if outbox mode is off.
+	 */
+	public static Outbox get() {
+		Outbox outbox = instance;
+		if (outbox == null && BACKEND != null && !unknownBackend) {
+			Jenkins jenkins = Jenkins.getInstance();
+			if (jenkins == null) {
+				return null;
+			}
+			ExtensionList<Outbox> backends = jenkins.getExtensionList(Outbox.class);
+			for (Outbox backend : backends) {
+				if (backend.getId().equals(BACKEND)) {
+					instance = outbox = backend;
+					return outbox;
+				}
+			}
+			unknownBackend = true;
+			LOGGER.log(Level.WARNING, "Unknown outbox backend {0}, delivering directly", BACKEND);
+		}
+		return outbox;
+	}
+}
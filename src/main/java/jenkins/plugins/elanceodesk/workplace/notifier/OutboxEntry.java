@@ -0,0 +1,279 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import hudson.model.Job;
+import hudson.security.ACL;
+import hudson.util.Secret;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+import jenkins.model.Jenkins;
+
+import org.acegisecurity.context.SecurityContext;
+import org.acegisecurity.context.SecurityContextHolder;
+
+/**
+ * One delivery waiting in an {@link Outbox}: the encoded payload for one
+ * webhook together with everything needed to post it without the job.
+ * <p>
+ * Payloads of webhooks with a secret are signed on every attempt, with the
+ * time of the attempt, so late retries and replays still fall in the replay
+ * window receivers enforce. The entry only names the job whose webhook holds
+ * the secret, see {@link #resolveSecret()}; no secret is ever written to the
+ * outbox.
+ */
+public final class OutboxEntry {
+
+	private static final int VERSION = 1;
+
+	private final String deliveryId;
+
+	private final String url;
+
+	private final String contentType;
+
+	private final String contentEncoding;
+
+	private final byte[] data;
+
+	private final int timeout;
+
+	/**
+	 * Full name of the job whose webhook with this URL holds the secret,
+	 * {@code null} for unsigned payloads.
+	 */
+	private final String secretSource;
+
+	private final String successCodes;
+
+	private final String retryCodes;
+
+	private final long createdAt;
+
+	private final int attempts;
+
+	private final long notBefore;
+
+	private OutboxEntry(String deliveryId, String url, String contentType, String contentEncoding, byte[] data,
+			int timeout, String secretSource, String successCodes, String retryCodes, long createdAt, int attempts,
+			long notBefore) {
+		this.deliveryId = deliveryId;
+		this.url = url;
+		this.contentType = contentType;
+		this.contentEncoding = contentEncoding;
+		this.data = data;
+		this.timeout = timeout;
+		this.secretSource = secretSource;
+		this.successCodes = successCodes;
+		this.retryCodes = retryCodes;
+		this.createdAt = createdAt;
+		this.attempts = attempts;
+		this.notBefore = notBefore;
+	}
+
+	/**
+	 * @param jobFullName
+	 *            job the webhook was notified for, its secret is looked up
+	 *            there on every attempt
+	 */
+	public static OutboxEntry create(Webhook webhook, String jobFullName, Payload payload, String deliveryId) {
+		long now = System.currentTimeMillis();
+		return new OutboxEntry(deliveryId, webhook.getUrl(), payload.getContentType(),
+				payload.getContentEncoding(), payload.getData(), webhook.getTimeout(),
+				webhook.getSecret() != null ? jobFullName : null, webhook.getSuccessCodes(), webhook.getRetryCodes(),
+				now, 0, now);
+	}
+
+	/**
+	 * Copy of this entry for the next attempt.
+	 *
+	 * @param delay
+	 *            milliseconds to wait before the entry is due again
+	 * @param failed
+	 *            whether the last attempt counts against the attempts
+	 */
+	public OutboxEntry retry(long delay, boolean failed) {
+		return new OutboxEntry(deliveryId, url, contentType, contentEncoding, data, timeout, secretSource,
+				successCodes, retryCodes, createdAt, failed ? attempts + 1 : attempts, System.currentTimeMillis()
+						+ delay);
+	}
+
+	public String getDeliveryId() {
+		return deliveryId;
+	}
+
+	public String getUrl() {
+		return url;
+	}
+
+	/**
+	 * Scheme, host and port of the URL, the unit rate limits apply to.
+	 */
+	public String getEndpoint() {
+		return DeliveryStats.endpointOf(url);
+	}
+
+	public String getContentType() {
+		return contentType;
+	}
+
+	/**
+	 * Value of the {@code Content-Encoding} header, {@code null} if the body
+	 * is not compressed.
+	 */
+	public String getContentEncoding() {
+		return contentEncoding;
+	}
+
+	public byte[] getData() {
+		return data;
+	}
+
+	public int getTimeout() {
+		return timeout;
+	}
+
+	/**
+	 * Full name of the job whose webhook holds the secret, {@code null} if
+	 * the payload is not signed.
+	 */
+	public String getSecretSource() {
+		return secretSource;
+	}
+
+	/**
+	 * Looks up the secret the webhook with this URL currently has in the
+	 * job the entry was queued for, including inherited webhooks. A
+	 * delivering controller without the job uses the global webhook with
+	 * this URL that applies to the job's full name, so that controllers
+	 * sharing their global configuration can deliver each other's entries.
+	 *
+	 * @return the secret, {@code null} if the payload is not signed, or
+	 *         neither the job nor a global webhook has it
+	 */
+	Secret resolveSecret() {
+		Jenkins jenkins = Jenkins.getInstance();
+		if (secretSource == null || jenkins == null) {
+			return null;
+		}
+		Job<?, ?> job;
+		SecurityContext context = ACL.impersonate(ACL.SYSTEM);
+		try {
+			job = jenkins.getItemByFullName(secretSource, Job.class);
+		} finally {
+			SecurityContextHolder.setContext(context);
+		}
+		List<Webhook> webhooks = job != null ? EffectiveWebhooks.of(job) : EffectiveWebhooks.resolve(secretSource,
+				null, EffectiveWebhooks.getGlobal());
+		for (Webhook webhook : webhooks) {
+			if (url.equals(webhook.getUrl())) {
+				return webhook.getSecret();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Response policy of the webhook at the time the entry was queued.
+	 */
+	public ResponsePolicy getResponsePolicy() {
+		try {
+			return new ResponsePolicy(successCodes, retryCodes);
+		} catch (IllegalArgumentException e) {
+			return ResponsePolicy.DEFAULT;
+		}
+	}
+
+	public long getCreatedAt() {
+		return createdAt;
+	}
+
+	/**
+	 * Number of failed attempts so far.
+	 */
+	public int getAttempts() {
+		return attempts;
+	}
+
+	/**
+	 * Time before which the entry is not delivered.
+	 */
+	public long getNotBefore() {
+		return notBefore;
+	}
+
+	public void writeTo(OutputStream out) throws IOException {
+		DataOutputStream data = new DataOutputStream(out);
+		data.writeInt(VERSION);
+		data.writeUTF(deliveryId);
+		data.writeUTF(url);
+		data.writeUTF(contentType);
+		writeNullable(data, contentEncoding);
+		data.writeInt(timeout);
+		writeNullable(data, secretSource);
+		writeNullable(data, successCodes);
+		writeNullable(data, retryCodes);
+		data.writeLong(createdAt);
+		data.writeInt(attempts);
+		data.writeLong(notBefore);
+		data.writeInt(this.data.length);
+		data.write(this.data);
+		data.flush();
+	}
+
+	public static OutboxEntry readFrom(InputStream in) throws IOException {
+		DataInputStream data = new DataInputStream(in);
+		int version = data.readInt();
+		if (version != VERSION) {
+			throw new IOException("Unsupported outbox entry version " + version);
+		}
+		String deliveryId = data.readUTF();
+		String url = data.readUTF();
+		String contentType = data.readUTF();
+		String contentEncoding = readNullable(data);
+		int timeout = data.readInt();
+		String secretSource = readNullable(data);
+		String successCodes = readNullable(data);
+		String retryCodes = readNullable(data);
+		long createdAt = data.readLong();
+		int attempts = data.readInt();
+		long notBefore = data.readLong();
+		byte[] body = new byte[data.readInt()];
+		data.readFully(body);
+		return new OutboxEntry(deliveryId, url, contentType, contentEncoding, body, timeout, secretSource,
+				successCodes, retryCodes, createdAt, attempts, notBefore);
+	}
+
+	private static void writeNullable(DataOutputStream out, String value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null) {
+			out.writeUTF(value);
+		}
+	}
+
+	private static String readNullable(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+	@Override
+	public String toString() {
+		return deliveryId + " for " + url;
+	}
+}
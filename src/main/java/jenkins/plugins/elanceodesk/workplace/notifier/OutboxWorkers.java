@@ -0,0 +1,170 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.LogTaskListener;
+import hudson.util.NamingThreadFactory;
+
+import java.io.PrintStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Delivery workers draining the {@link Outbox}.
+ * <p>
+ * Each of the {@code workers} threads claims the next due entry, posts it
+ * with a single {@link HttpWorker} attempt and either completes it or puts it
+ * back with an exponential backoff. Requests to one endpoint are limited to
+ * {@code ratePerSecond} across all workers of this controller. Controllers
+ * that should only queue deliveries run with {@code workers} set to 0, which
+ * makes the limits of the delivering controllers global. Concurrent
+ * requests to one endpoint are bounded by its {@link ConcurrencyLimit}, shared
+ * with direct deliveries.
+ */
+public final class OutboxWorkers implements Runnable {
+
+	private static final Logger LOGGER = Logger.getLogger(OutboxWorkers.class.getName());
+
+	static final int WORKERS = Integer.getInteger(OutboxWorkers.class.getName() + ".workers", 2);
+
+	static final int RATE_PER_SECOND = Integer.getInteger(OutboxWorkers.class.getName() + ".ratePerSecond", 10);
+
+	static final int BURST = Integer.getInteger(OutboxWorkers.class.getName() + ".burst", RATE_PER_SECOND);
+
+	/**
+	 * Failed attempts after which an entry is dropped.
+	 */
+	static final int MAX_ATTEMPTS = Integer.getInteger(OutboxWorkers.class.getName() + ".maxAttempts", 10);
+
+	private static final long IDLE_DELAY = 500;
+
+	/**
+	 * Delay before an entry whose endpoint is at its concurrency limit is
+	 * tried again.
+	 */
+	private static final long LIMITED_DELAY = 250;
+
+	private static final long MIN_BACKOFF = TimeUnit.SECONDS.toMillis(10);
+
+	private static final long MAX_BACKOFF = TimeUnit.MINUTES.toMillis(10);
+
+	private static ExecutorService executor;
+
+	private final Outbox outbox;
+
+	private final EndpointRateLimiter limiter;
+
+	private final PrintStream logger = new LogTaskListener(LOGGER, Level.FINE).getLogger();
+
+	OutboxWorkers(Outbox outbox, EndpointRateLimiter limiter) {
+		this.outbox = outbox;
+		this.limiter = limiter;
+	}
+
+	@Initializer(after = InitMilestone.JOB_LOADED)
+	public static synchronized void start() {
+		Outbox outbox = Outbox.get();
+		if (outbox == null || WORKERS <= 0 || executor != null) {
+			return;
+		}
+		LOGGER.log(Level.INFO, "Starting {0} workers for the {1} outbox", new Object[] { WORKERS, outbox.getId() });
+		executor = Executors.newFixedThreadPool(WORKERS, new NamingThreadFactory(new DaemonThreadFactory(),
+				"Workplace outbox worker"));
+		EndpointRateLimiter limiter = new EndpointRateLimiter(RATE_PER_SECOND, BURST);
+		for (int i = 0; i < WORKERS; i++) {
+			executor.submit(new OutboxWorkers(outbox, limiter));
+		}
+	}
+
+	/**
+	 * Interrupts the workers. Entries they hold are picked up again once
+	 * their claim expires.
+	 */
+	static synchronized void stop() {
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+
+	public void run() {
+		while (!Thread.currentThread().isInterrupted()) {
+			try {
+				if (!deliverNext()) {
+					Thread.sleep(IDLE_DELAY);
+				}
+			} catch (InterruptedException e) {
+				return;
+			} catch (Exception e) {
+				LOGGER.log(Level.WARNING, "Failed to deliver from the outbox", e);
+			}
+		}
+	}
+
+	/**
+	 * Claims and settles one entry.
+	 *
+	 * @return {@code false} if no entry was due or delivery is paused
+	 */
+	boolean deliverNext() throws Exception {
+		if (DeliveryService.isPaused()) {
+			return false;
+		}
+		OutboxEntry entry = outbox.poll();
+		if (entry == null) {
+			return false;
+		}
+		ConcurrencyLimit concurrency = DeliveryStats.forUrl(entry.getUrl()).getLimit();
+		if (!concurrency.tryAcquire()) {
+			outbox.release(entry, entry.retry(LIMITED_DELAY, false));
+			return true;
+		}
+		HttpWorker worker;
+		try {
+			long wait = limiter.tryAcquire(entry.getEndpoint(), System.currentTimeMillis());
+			if (wait > 0) {
+				outbox.release(entry, entry.retry(wait, false));
+				return true;
+			}
+			worker = new HttpWorker(entry, logger);
+			worker.run();
+		} finally {
+			DeliveryService.release(concurrency);
+		}
+		if (worker.isDelivered()) {
+			outbox.complete(entry);
+		} else if (worker.isTerminal()) {
+			LOGGER.log(Level.WARNING, "Dropping outbox entry {0}, the webhook rejected it", entry);
+			outbox.complete(entry);
+		} else if (worker.isSecretUnavailable()) {
+			// not counted, a controller that has the secret may deliver it
+			LOGGER.log(Level.WARNING, "Parking outbox entry {0}, its webhook secret is not configured here", entry);
+			outbox.release(entry, entry.retry(MAX_BACKOFF, false));
+		} else if (entry.getAttempts() + 1 >= MAX_ATTEMPTS) {
+			LOGGER.log(Level.WARNING, "Dropping outbox entry {0} after {1} attempts", new Object[] { entry,
+					MAX_ATTEMPTS });
+			outbox.complete(entry);
+		} else {
+			long backoff = Math.min(MAX_BACKOFF, MIN_BACKOFF << Math.min(entry.getAttempts(), 16));
+			outbox.release(entry, entry.retry(Math.max(backoff, worker.getRetryDelay()), true));
+		}
+		return true;
+	}
+}
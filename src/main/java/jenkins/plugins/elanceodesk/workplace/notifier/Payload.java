@@ -0,0 +1,75 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encoded request body together with its content type. The body is shared
+ * between workers and must not be modified.
+ */
+public final class Payload {
+
+	public static final String GZIP = "gzip";
+
+	private final byte[] data;
+
+	private final String contentType;
+
+	private final String contentEncoding;
+
+	public Payload(byte[] data, String contentType) {
+		this(data, contentType, null);
+	}
+
+	/**
+	 * @param contentEncoding
+	 *            value of the {@code Content-Encoding} header, {@code null} if
+	 *            the body is not compressed
+	 */
+	public Payload(byte[] data, String contentType, String contentEncoding) {
+		this.data = data;
+		this.contentType = contentType;
+		this.contentEncoding = contentEncoding;
+	}
+
+	public byte[] getData() {
+		return data;
+	}
+
+	public String getContentType() {
+		return contentType;
+	}
+
+	public String getContentEncoding() {
+		return contentEncoding;
+	}
+
+	/**
+	 * This payload compressed with gzip.
+	 */
+	public Payload gzip() {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+		try {
+			GZIPOutputStream gzip = new GZIPOutputStream(out);
+			gzip.write(data);
+			gzip.close();
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return new Payload(out.toByteArray(), contentType, GZIP);
+	}
+}
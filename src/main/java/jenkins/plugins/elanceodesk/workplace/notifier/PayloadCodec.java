@@ -0,0 +1,32 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import jenkins.plugins.elanceodesk.workplace.notifier.model.JobState;
+
+/**
+ * Encodes the notification model into a request body.
+ */
+public interface PayloadCodec {
+
+	String getContentType();
+
+	/**
+	 * Identifies the encoding, codecs with the same key produce the same body
+	 * for the same model.
+	 */
+	String getKey();
+
+	Payload encode(JobState jobState);
+}
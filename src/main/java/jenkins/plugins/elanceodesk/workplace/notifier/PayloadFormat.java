@@ -0,0 +1,116 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+
+import jenkins.plugins.elanceodesk.workplace.notifier.model.JobState;
+import jenkins.plugins.elanceodesk.workplace.notifier.model.ModelAdapters;
+
+import com.google.gson.FieldNamingPolicy;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Payload formats a webhook can choose from. Both formats carry the same
+ * fields under the same names.
+ */
+public enum PayloadFormat implements PayloadCodec {
+
+	JSON("JSON", "application/json; charset=UTF-8") {
+		@Override
+		public Payload encode(JobState jobState) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+			try {
+				write(jobState, new JsonWriter(new OutputStreamWriter(out, UTF_8)));
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+			return new Payload(out.toByteArray(), getContentType());
+		}
+	},
+
+	/**
+	 * <a href="http://tools.ietf.org/html/rfc7049">CBOR</a>, written straight
+	 * from the model writers without building a JSON tree.
+	 */
+	CBOR("CBOR (binary)", "application/cbor") {
+		@Override
+		public Payload encode(JobState jobState) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+			try {
+				write(jobState, new CborWriter(out));
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+			return new Payload(out.toByteArray(), getContentType());
+		}
+	};
+
+	static final Gson GSON = ModelAdapters.register(
+			new GsonBuilder().setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)).create();
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final String displayName;
+
+	private final String contentType;
+
+	/**
+	 * Writes a payload with the settings {@link #GSON} would use: nulls are
+	 * dropped and HTML characters are escaped.
+	 */
+	private static void write(JobState jobState, JsonWriter writer) throws IOException {
+		writer.setLenient(true);
+		writer.setHtmlSafe(true);
+		writer.setSerializeNulls(false);
+		ModelAdapters.JOB_STATE.write(writer, jobState);
+		writer.close();
+	}
+
+	private PayloadFormat(String displayName, String contentType) {
+		this.displayName = displayName;
+		this.contentType = contentType;
+	}
+
+	public String getDisplayName() {
+		return displayName;
+	}
+
+	public String getContentType() {
+		return contentType;
+	}
+
+	public String getKey() {
+		return name();
+	}
+
+	/**
+	 * Looks up a format by name, falling back to {@link #JSON}.
+	 */
+	public static PayloadFormat fromName(String name) {
+		if (name != null) {
+			for (PayloadFormat format : values()) {
+				if (format.name().equalsIgnoreCase(name.trim())) {
+					return format;
+				}
+			}
+		}
+		return JSON;
+	}
+}
@@ -0,0 +1,100 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Signs webhook payloads with HMAC-SHA256.
+ * <p>
+ * The signature covers {@code <timestamp>.<body>} and is computed directly
+ * over the body buffer that is posted. Initialized {@link Mac} instances are
+ * cached per thread and per secret, so signing a delivery only costs the
+ * digest itself.
+ */
+public final class PayloadSigner {
+
+	public static final String ALGORITHM = "HmacSHA256";
+
+	public static final String SIGNATURE_HEADER = "X-Workplace-Signature";
+
+	public static final String TIMESTAMP_HEADER = "X-Workplace-Timestamp";
+
+	public static final String DELIVERY_HEADER = "X-Workplace-Delivery";
+
+	public static final String SIGNATURE_PREFIX = "sha256=";
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private static final int MAX_CACHED_KEYS = 16;
+
+	private static final ThreadLocal<Map<String, Mac>> MACS = new ThreadLocal<Map<String, Mac>>() {
+		@Override
+		protected Map<String, Mac> initialValue() {
+			return new LinkedHashMap<String, Mac>(MAX_CACHED_KEYS, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, Mac> eldest) {
+					return size() > MAX_CACHED_KEYS;
+				}
+			};
+		}
+	};
+
+	private PayloadSigner() {
+	}
+
+	/**
+	 * Computes the value of the {@link #SIGNATURE_HEADER} header.
+	 */
+	public static String sign(String secret, String timestamp, byte[] body) {
+		Mac mac = getMac(secret);
+		mac.update(timestamp.getBytes(UTF_8));
+		mac.update((byte) '.');
+		mac.update(body);
+		byte[] digest = mac.doFinal();
+		char[] out = new char[SIGNATURE_PREFIX.length() + digest.length * 2];
+		SIGNATURE_PREFIX.getChars(0, SIGNATURE_PREFIX.length(), out, 0);
+		int pos = SIGNATURE_PREFIX.length();
+		for (byte b : digest) {
+			out[pos++] = HEX[(b >> 4) & 0xf];
+			out[pos++] = HEX[b & 0xf];
+		}
+		return new String(out);
+	}
+
+	private static Mac getMac(String secret) {
+		Map<String, Mac> macs = MACS.get();
+		Mac mac = macs.get(secret);
+		if (mac == null) {
+			try {
+				mac = Mac.getInstance(ALGORITHM);
+				mac.init(new SecretKeySpec(secret.getBytes(UTF_8), ALGORITHM));
+			} catch (GeneralSecurityException e) {
+				throw new IllegalStateException(String.format("Unable to initialize %s", ALGORITHM), e);
+			}
+			macs.put(secret, mac);
+		}
+		return mac;
+	}
+}
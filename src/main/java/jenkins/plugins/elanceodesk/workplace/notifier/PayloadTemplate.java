@@ -0,0 +1,355 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import java.lang.reflect.Method;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import jenkins.plugins.elanceodesk.workplace.notifier.model.JobState;
+
+/**
+ * Request body template, compiled once when the webhook is configured.
+ * <p>
+ * Placeholders like {@code ${build.status}} or
+ * {@code ${build.parameters.BRANCH}} reference the payload fields by their
+ * JSON names. Each placeholder is resolved to a chain of getters at compile
+ * time, so rendering only calls them and writes the literal bytes and values
+ * straight into a per thread buffer. Only getters of the payload model
+ * classes and keys of their maps can be referenced. A literal
+ * <code>${</code> is written as <code>$${</code>.
+ * <p>
+ * In JSON templates values are escaped for use inside a JSON string, and
+ * objects and lists are written as JSON. Missing values render as nothing.
+ */
+public final class PayloadTemplate implements PayloadCodec {
+
+	public static final String DEFAULT_CONTENT_TYPE = "application/json; charset=UTF-8";
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	/**
+	 * Size up to which a thread keeps its render buffer between bodies. A
+	 * larger buffer is dropped once its body is copied out.
+	 */
+	static final int RETAINED_BUFFER_BYTES = Integer.getInteger(PayloadTemplate.class.getName()
+			+ ".retainedBufferBytes", 64 * 1024);
+
+	private static final String MODEL_PACKAGE = JobState.class.getPackage().getName();
+
+	private static final ThreadLocal<Buffer> BUFFER = new ThreadLocal<Buffer>() {
+		@Override
+		protected Buffer initialValue() {
+			return new Buffer();
+		}
+	};
+
+	private final String source;
+
+	private final String contentType;
+
+	private final boolean json;
+
+	/**
+	 * Literal parts, one more than there are placeholders.
+	 */
+	private final byte[][] literals;
+
+	private final Accessor[] accessors;
+
+	private PayloadTemplate(String source, String contentType, byte[][] literals, Accessor[] accessors) {
+		this.source = source;
+		this.contentType = contentType;
+		this.json = contentType.toLowerCase().contains("json");
+		this.literals = literals;
+		this.accessors = accessors;
+	}
+
+	/**
+	 * @param contentType
+	 *            content type of the rendered body, JSON if empty
+	 * @throws IllegalArgumentException
+	 *             if a placeholder is not closed or references an unknown field
+	 */
+	public static PayloadTemplate compile(String source, String contentType) {
+		List<byte[]> literals = new ArrayList<byte[]>();
+		List<Accessor> accessors = new ArrayList<Accessor>();
+		StringBuilder literal = new StringBuilder();
+		int pos = 0;
+		while (pos < source.length()) {
+			if (source.startsWith("$${", pos)) {
+				literal.append("${");
+				pos += 3;
+			} else if (source.startsWith("${", pos)) {
+				int end = source.indexOf('}', pos + 2);
+				if (end < 0) {
+					throw new IllegalArgumentException(String.format("Unclosed placeholder at position %s", pos));
+				}
+				literals.add(literal.toString().getBytes(UTF_8));
+				literal.setLength(0);
+				accessors.add(Accessor.compile(source.substring(pos + 2, end).trim()));
+				pos = end + 1;
+			} else {
+				literal.append(source.charAt(pos++));
+			}
+		}
+		literals.add(literal.toString().getBytes(UTF_8));
+		return new PayloadTemplate(source, Utils.isEmpty(contentType) ? DEFAULT_CONTENT_TYPE : contentType.trim(),
+				literals.toArray(new byte[literals.size()][]), accessors.toArray(new Accessor[accessors.size()]));
+	}
+
+	public String getSource() {
+		return source;
+	}
+
+	public String getContentType() {
+		return contentType;
+	}
+
+	/**
+	 * Webhooks with the same template share the rendered body.
+	 */
+	public String getKey() {
+		return "template|" + contentType + '|' + source;
+	}
+
+	public Payload encode(JobState jobState) {
+		Buffer buffer = BUFFER.get();
+		buffer.reset();
+		for (int i = 0; i < accessors.length; i++) {
+			buffer.write(literals[i]);
+			write(buffer, accessors[i].get(jobState));
+		}
+		buffer.write(literals[accessors.length]);
+		byte[] body = buffer.toByteArray();
+		buffer.trim();
+		return new Payload(body, contentType);
+	}
+
+	private void write(Buffer buffer, Object value) {
+		if (value == null) {
+			return;
+		}
+		if (value instanceof String || value instanceof Number || value instanceof Boolean || value instanceof Enum) {
+			String s = value instanceof Enum ? ((Enum<?>) value).name() : value.toString();
+			if (json) {
+				buffer.writeJsonEscaped(s);
+			} else {
+				buffer.writeUtf8(s);
+			}
+		} else {
+			buffer.writeUtf8(PayloadFormat.GSON.toJson(value));
+		}
+	}
+
+	/**
+	 * Chain of getters, optionally followed by a map lookup, resolving one
+	 * placeholder.
+	 */
+	private static final class Accessor {
+
+		private final Method[] getters;
+
+		/**
+		 * Key looked up in the map the getters lead to, {@code null} if the
+		 * placeholder ends at a getter.
+		 */
+		private final String key;
+
+		private Accessor(Method[] getters, String key) {
+			this.getters = getters;
+			this.key = key;
+		}
+
+		static Accessor compile(String path) {
+			if (path.length() == 0) {
+				throw new IllegalArgumentException("Empty placeholder");
+			}
+			String[] names = path.split("\\.");
+			List<Method> getters = new ArrayList<Method>();
+			Class<?> type = JobState.class;
+			int offset = 0;
+			for (String name : names) {
+				if (Map.class.isAssignableFrom(type)) {
+					// the rest is the key, parameter names may contain dots
+					return new Accessor(getters.toArray(new Method[getters.size()]), path.substring(offset));
+				}
+				Method getter = isModel(type) ? getter(type, name) : null;
+				if (getter == null) {
+					throw new IllegalArgumentException(String.format("Unknown field '%s' in '%s'", name, path));
+				}
+				getters.add(getter);
+				type = getter.getReturnType();
+				offset += name.length() + 1;
+			}
+			return new Accessor(getters.toArray(new Method[getters.size()]), null);
+		}
+
+		Object get(JobState jobState) {
+			Object value = jobState;
+			try {
+				for (Method getter : getters) {
+					value = getter.invoke(value);
+					if (value == null) {
+						return null;
+					}
+				}
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+			return key == null ? value : ((Map<?, ?>) value).get(key);
+		}
+
+		/**
+		 * Whether the type is one of the payload model classes, whose getters
+		 * may be followed.
+		 */
+		private static boolean isModel(Class<?> type) {
+			String name = type.getName();
+			return name.startsWith(MODEL_PACKAGE) && name.lastIndexOf('.') == MODEL_PACKAGE.length();
+		}
+
+		/**
+		 * Getter of a snake case field, e.g. {@code getFullUrl()} for
+		 * {@code full_url}, declared by a model class.
+		 */
+		private static Method getter(Class<?> type, String name) {
+			StringBuilder camel = new StringBuilder(name.length());
+			boolean upper = true;
+			for (char c : name.toCharArray()) {
+				if (c == '_') {
+					upper = true;
+				} else {
+					camel.append(upper ? Character.toUpperCase(c) : c);
+					upper = false;
+				}
+			}
+			for (String prefix : Arrays.asList("get", "is")) {
+				try {
+					Method method = type.getMethod(prefix + camel);
+					if (method.getReturnType() != void.class && isModel(method.getDeclaringClass())) {
+						return method;
+					}
+				} catch (NoSuchMethodException e) {
+					// try the next prefix
+				}
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Growable byte buffer that encodes strings itself instead of going
+	 * through {@link String#getBytes}.
+	 */
+	private static final class Buffer {
+
+		private byte[] bytes = new byte[1024];
+
+		private int count;
+
+		void reset() {
+			count = 0;
+		}
+
+		byte[] toByteArray() {
+			return Arrays.copyOf(bytes, count);
+		}
+
+		/**
+		 * Drops storage grown past {@link #RETAINED_BUFFER_BYTES}, so a thread
+		 * does not keep the largest body it ever rendered.
+		 */
+		void trim() {
+			if (bytes.length > RETAINED_BUFFER_BYTES) {
+				bytes = new byte[1024];
+			}
+			count = 0;
+		}
+
+		void write(byte[] b) {
+			ensure(b.length);
+			System.arraycopy(b, 0, bytes, count, b.length);
+			count += b.length;
+		}
+
+		void writeUtf8(String s) {
+			writeUtf8(s, 0, s.length());
+		}
+
+		void writeUtf8(String s, int start, int end) {
+			ensure((end - start) * 3);
+			for (int i = start; i < end; i++) {
+				char c = s.charAt(i);
+				if (c < 0x80) {
+					bytes[count++] = (byte) c;
+				} else if (c < 0x800) {
+					bytes[count++] = (byte) (0xc0 | (c >> 6));
+					bytes[count++] = (byte) (0x80 | (c & 0x3f));
+				} else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(s.charAt(i + 1))) {
+					int cp = Character.toCodePoint(c, s.charAt(++i));
+					bytes[count++] = (byte) (0xf0 | (cp >> 18));
+					bytes[count++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+					bytes[count++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+					bytes[count++] = (byte) (0x80 | (cp & 0x3f));
+				} else {
+					bytes[count++] = (byte) (0xe0 | (c >> 12));
+					bytes[count++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+					bytes[count++] = (byte) (0x80 | (c & 0x3f));
+				}
+			}
+		}
+
+		void writeJsonEscaped(String s) {
+			int start = 0;
+			for (int i = 0; i < s.length(); i++) {
+				char c = s.charAt(i);
+				if (c != '"' && c != '\\' && c >= 0x20) {
+					continue;
+				}
+				writeUtf8(s, start, i);
+				ensure(6);
+				bytes[count++] = '\\';
+				if (c == '"' || c == '\\') {
+					bytes[count++] = (byte) c;
+				} else if (c == '\n') {
+					bytes[count++] = 'n';
+				} else if (c == '\r') {
+					bytes[count++] = 'r';
+				} else if (c == '\t') {
+					bytes[count++] = 't';
+				} else {
+					bytes[count++] = 'u';
+					bytes[count++] = '0';
+					bytes[count++] = '0';
+					bytes[count++] = (byte) HEX[c >> 4];
+					bytes[count++] = (byte) HEX[c & 0xf];
+				}
+				start = i + 1;
+			}
+			writeUtf8(s, start, s.length());
+		}
+
+		private void ensure(int extra) {
+			if (count + extra > bytes.length) {
+				bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, count + extra));
+			}
+		}
+	}
+}
@@ -13,85 +13,291 @@
  */
 package jenkins.plugins.elanceodesk.workplace.notifier;
 
-import hudson.EnvVars;
 import hudson.Util;
-import hudson.model.Cause;
-import hudson.model.ParameterValue;
 import hudson.model.Result;
 import hudson.model.TaskListener;
 import hudson.model.AbstractBuild;
+import hudson.model.Computer;
+import hudson.model.Executor;
 import hudson.model.Job;
-import hudson.model.ParametersAction;
+import hudson.model.Queue;
 import hudson.model.Run;
 import hudson.scm.ChangeLogSet;
 import hudson.scm.ChangeLogSet.Entry;
+import hudson.util.LogTaskListener;
 
 import java.io.IOException;
+import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
-import jenkins.model.Jenkins;
 import jenkins.plugins.elanceodesk.workplace.notifier.model.BuildState;
-import jenkins.plugins.elanceodesk.workplace.notifier.model.Changeset;
 import jenkins.plugins.elanceodesk.workplace.notifier.model.JobState;
-import jenkins.plugins.elanceodesk.workplace.notifier.model.ScmState;
-
-import com.google.gson.FieldNamingPolicy;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import jenkins.plugins.elanceodesk.workplace.notifier.model.TestSummary;
 
 @SuppressWarnings({ "unchecked", "rawtypes" })
 public enum Phase {
-	STARTED, COMPLETED;
+	STARTED, COMPLETED,
+
+	/**
+	 * A stage of a Pipeline build, see {@link WebhookStageStep}.
+	 */
+	STAGE_STARTED, STAGE_COMPLETED,
 
-	private final Gson gson = new GsonBuilder().setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)
-			.create();
+	/**
+	 * Periodic heartbeat of a running build, see {@link ProgressHeartbeat}.
+	 */
+	IN_PROGRESS,
 
-	private ExecutorService executorService = Executors.newCachedThreadPool();
+	/**
+	 * Build queue events, see {@link QueueNotifier}.
+	 */
+	QUEUED, BLOCKED, LEFT_QUEUE;
+
+	private static final Logger LOGGER = Logger.getLogger(Phase.class.getName());
+
+	/**
+	 * Builds the payload and notifies webhooks without blocking the caller,
+	 * e.g. for Pipeline builds where the caller may be a CPS VM thread.
+	 */
+	public void handleAsync(final Run run, final TaskListener listener) {
+		DeliveryService.execute(new Runnable() {
+			public void run() {
+				handle(run, listener);
+			}
+		});
+	}
 
-	public void handle(AbstractBuild build, TaskListener listener) {
+	/**
+	 * Notifies webhooks from a Pipeline step without blocking the caller, see
+	 * {@link WebhookNotifyStep}. The SCM state is read again since the step
+	 * usually runs after the checkout.
+	 *
+	 * @param step
+	 *            id of the step execution, so the event is not taken for the
+	 *            one sent when the build started
+	 */
+	void handleStepAsync(final Run run, final TaskListener listener, final String step) {
+		DeliveryService.execute(new Runnable() {
+			public void run() {
+				handle(run, listener, null, null, step);
+			}
+		});
+	}
 
-		WebhookJobProperty property = (WebhookJobProperty) build.getParent().getProperty(WebhookJobProperty.class);
-		if (property == null) {
+	/**
+	 * Notifies webhooks about a stage of the build without blocking the caller.
+	 *
+	 * @param status
+	 *            outcome of the stage, {@code null} while it is running
+	 * @param step
+	 *            id of the step execution, so stages of the same name get
+	 *            their own event ids
+	 */
+	void handleStageAsync(final Run run, final TaskListener listener, final String stage, final String status,
+			final String step) {
+		DeliveryService.execute(new Runnable() {
+			public void run() {
+				handle(run, listener, stage, status, step);
+			}
+		});
+	}
+
+	/**
+	 * Notifies webhooks about a queue event without blocking the queue. Only
+	 * the state that may change once the item moves on is read by the caller.
+	 */
+	void handleQueueAsync(final Job job, final Queue.Item item, final long timestamp, final Boolean cancelled) {
+		if (getTargets(job, null).isEmpty()) {
+			return;
+		}
+		final long queueId = item.id;
+		final long inQueueSince = item.getInQueueSince();
+		final String why = this.equals(LEFT_QUEUE) ? null : item.getWhy();
+		DeliveryService.execute(new Runnable() {
+			public void run() {
+				List<Webhook> targets = getTargets(job, null);
+				TaskListener listener = new LogTaskListener(LOGGER, Level.FINE);
+				JobState jobState = new JobState();
+				BuildState buildState = new BuildState();
+				jobState.setName(job.getName());
+				jobState.setUrl(job.getUrl());
+				jobState.setBuild(buildState);
+				jobState.setEventId(QueueNotifier.eventId(job.getFullName(), Phase.this, queueId, inQueueSince));
+				buildState.setPhase(Phase.this);
+				buildState.setQueueId(queueId);
+				buildState.setInQueueSince(inQueueSince);
+				if (Phase.this.equals(LEFT_QUEUE)) {
+					buildState.setQueueWaitTime(timestamp - inQueueSince);
+					buildState.setCancelled(cancelled);
+				} else {
+					buildState.setQueueReason(why);
+				}
+				dispatch(targets, job.getFullName(), jobState, listener, null, null);
+			}
+		});
+	}
+
+	public void handle(Run build, TaskListener listener) {
+		handle(build, listener, null, null, null);
+	}
+
+	private void handle(Run build, TaskListener listener, String stage, String stageStatus, String step) {
+
+		List<Webhook> targets = getTargets(build.getParent(), build);
+		if (targets.isEmpty()) {
+			if (this.equals(COMPLETED)) {
+				RunSnapshot.release(build);
+			}
 			return;
 		}
 
 		JobState jobState = null;
 		try {
-			jobState = buildJobState(build.getParent(), build, listener);
+			jobState = buildJobState(build.getParent(), build, listener, stage, stageStatus, step);
 		} catch (Throwable e) {
 			e.printStackTrace(listener.error(String.format("Unable to build the json object")));
 			listener.getLogger().println(
 					String.format("Unable to build the json object - %s: %s", e.getClass().getName(),
 							e.getMessage()));
+		} finally {
+			if (this.equals(COMPLETED)) {
+				RunSnapshot.release(build);
+			}
 		}
 		if(jobState != null) {
-			for (Webhook target : property.getWebhooks()) {
-				if (isRun(target, build)) {
-					listener.getLogger().println(String.format("Notifying webhook '%s'", target));
-					try {
-						
-						HttpWorker worker = new HttpWorker(target.getUrl(), gson.toJson(jobState), target.getTimeout(), 3,
-								listener.getLogger());
-						executorService.submit(worker);
-					} catch (Throwable error) {
-						error.printStackTrace(listener.error(String.format("Failed to notify webhook '%s'", target)));
-						listener.getLogger().println(
-								String.format("Failed to notify webhook '%s' - %s: %s", target, error.getClass().getName(),
-										error.getMessage()));
+			ArtifactIndex artifacts = null;
+			TestReport tests = null;
+			if (this.equals(COMPLETED)) {
+				// Artifact links are absolute, so they are left out without a root URL
+				String fullUrl = jobState.getBuild().getFullUrl();
+				if (fullUrl != null) {
+					artifacts = new ArtifactIndex(build, fullUrl);
+				}
+				tests = new TestReport(build);
+			}
+			dispatch(targets, build.getParent().getFullName(), jobState, listener, artifacts, tests);
+		}
+	}
+
+	/**
+	 * Webhooks of the job, including inherited ones, that want to be notified
+	 * at this phase.
+	 *
+	 * @param build
+	 *            the build, {@code null} for queue events
+	 */
+	private List<Webhook> getTargets(Job job, Run build) {
+		List<Webhook> webhooks = EffectiveWebhooks.of(job);
+		if (webhooks.isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		List<Webhook> targets = new ArrayList<Webhook>();
+		for (Webhook target : webhooks) {
+			if (isRun(target, build)) {
+				targets.add(target);
+			}
+		}
+		return targets;
+	}
+
+	/**
+	 * Posts the payload to each target, or queues it in the {@link Outbox} if
+	 * outbox mode is on.
+	 * <p>
+	 * Payloads are encoded one after another, so the optional sections a
+	 * target asks for are set on the shared build state just for its
+	 * encoding. Targets asking for the same body, keyed by projection, codec
+	 * and compression, share one encoding.
+	 *
+	 * @param jobFullName
+	 *            job notified about, where secrets of queued deliveries are
+	 *            looked up
+	 * @param artifacts
+	 *            archived artifacts of a completed build, {@code null} for
+	 *            other phases
+	 * @param tests
+	 *            test results of a completed build, {@code null} for other
+	 *            phases
+	 */
+	private void dispatch(List<Webhook> targets, String jobFullName, JobState jobState, TaskListener listener,
+			ArtifactIndex artifacts, TestReport tests) {
+		Map<String, Payload> payloads = new HashMap<String, Payload>();
+		Outbox outbox = Outbox.get();
+		BuildState buildState = jobState.getBuild();
+		for (Webhook target : targets) {
+			DeliveryLog.event(DeliveryLog.Event.NOTIFYING, listener.getLogger()).url(target.getUrl()).log();
+			try {
+				PayloadCodec codec = target.getCodec();
+				String projection = project(target, buildState, artifacts, tests);
+				Payload payload;
+				try {
+					String key = codec.getKey() + projection + (target.isCompress() ? "|gzip" : "");
+					payload = payloads.get(key);
+					if (payload == null) {
+						payload = codec.encode(jobState);
+						if (target.isCompress()) {
+							payload = payload.gzip();
+						}
+						payloads.put(key, payload);
+					}
+				} finally {
+					project(null, buildState, null, null);
+				}
+				String deliveryId = DeliveryId.forDelivery(jobState.getEventId(), target.getUrl());
+				if (outbox != null) {
+					if (!outbox.offer(OutboxEntry.create(target, jobFullName, payload, deliveryId))) {
+						DeliveryLog.event(DeliveryLog.Event.ALREADY_QUEUED, listener.getLogger())
+								.url(target.getUrl()).deliveryId(deliveryId).log();
 					}
+					continue;
 				}
+				DeliveryService.deliver(target, jobFullName, payload, deliveryId, listener.getLogger());
+			} catch (Throwable error) {
+				error.printStackTrace(listener.error(String.format("Failed to notify webhook '%s'", target)));
+				listener.getLogger().println(
+						String.format("Failed to notify webhook '%s' - %s: %s", target, error.getClass()
+								.getName(), error.getMessage()));
 			}
 		}
 	}
 
+	/**
+	 * Sets the optional sections the target asks for on the build state, or
+	 * clears them for a {@code null} target.
+	 *
+	 * @return key identifying the sections that were set
+	 */
+	private static String project(Webhook target, BuildState buildState, ArtifactIndex artifacts, TestReport tests) {
+		StringBuilder key = new StringBuilder();
+		ArtifactIndex.Selection selection = null;
+		if (target != null && artifacts != null && target.getArtifacts() != null) {
+			selection = artifacts.select(target.getArtifacts());
+			key.append("|artifacts=").append(target.getArtifacts());
+		}
+		buildState.setArtifacts(selection == null ? null : selection.getArtifacts());
+		buildState.setArtifactsTruncated(selection != null && selection.isTruncated() ? Boolean.TRUE : null);
+
+		TestSummary summary = null;
+		if (target != null && tests != null && target.isTestSummary()) {
+			summary = tests.getSummary(target.isFailedTests());
+			key.append(target.isFailedTests() ? "|tests=names" : "|tests");
+		}
+		buildState.setTestSummary(summary);
+		return key.toString();
+	}
+
 	/**
 	 * Determines if the webhook specified should be notified at the current job
 	 * phase.
 	 */
-	private boolean isRun(Webhook webhook, AbstractBuild build) {
+	private boolean isRun(Webhook webhook, Run build) {
 		if (this.equals(STARTED) && webhook.isStartNotification()) {
 			return true;
 		} else if (this.equals(COMPLETED)) {
@@ -105,6 +311,12 @@ public enum Phase {
 					|| (result == Result.SUCCESS && webhook.isNotifySuccess()) || (result == Result.UNSTABLE && webhook
 					.isNotifyUnstable()));
 
+		} else if (this.equals(STAGE_STARTED) || this.equals(STAGE_COMPLETED)) {
+			return webhook.isNotifyStages();
+		} else if (this.equals(IN_PROGRESS)) {
+			return webhook.isNotifyProgress();
+		} else if (this.equals(QUEUED) || this.equals(BLOCKED) || this.equals(LEFT_QUEUE)) {
+			return webhook.isNotifyQueue();
 		} else {
 			return false;
 		}
@@ -116,45 +328,47 @@ public enum Phase {
 	 * @param job
 	 * @param run
 	 * @param listener
+	 * @param stage
+	 *            stage name for stage phases
+	 * @param stageStatus
+	 *            outcome of the stage for {@link #STAGE_COMPLETED}
+	 * @param step
+	 *            id of the step execution that sent the event, {@code null}
+	 *            for events of the build itself
 	 * @return
 	 * @throws IOException
 	 * @throws InterruptedException
 	 */
-	private JobState buildJobState(Job job, AbstractBuild run, TaskListener listener) throws IOException,
-			InterruptedException {
+	private JobState buildJobState(Job job, Run run, TaskListener listener, String stage, String stageStatus,
+			String step) throws IOException, InterruptedException {
 
-		Jenkins jenkins = Jenkins.getInstance();
-		String rootUrl = jenkins.getRootUrl();
+		RunSnapshot snapshot = RunSnapshot.of(run, listener);
+		String rootUrl = snapshot.getRootUrl();
 		JobState jobState = new JobState();
 		BuildState buildState = new BuildState();
-		ScmState scmState = new ScmState();
-		ParametersAction paramsAction = run.getAction(ParametersAction.class);
-		EnvVars environment = run.getEnvironment(listener);
 		Result result = run.getResult();
 		String status = null;
 		long currentBuildCompletionTime = run.getStartTimeInMillis() + run.getDuration();
-		List<Cause> causes = run.getCauses();
-		if (causes != null) {
-			List<String> causesStrList = new ArrayList<String>();
-			for (Cause cause : causes) {
-				causesStrList.add(cause.getShortDescription());
-			}
-			buildState.setCauses(causesStrList);
+		if (snapshot.getCauses() != null) {
+			buildState.setCauses(snapshot.getCauses());
 		}
 
 		buildState.setCompletionTime(currentBuildCompletionTime);
 
+		if (this.equals(COMPLETED) || step != null) {
+			snapshot.refreshScm(run, listener);
+		}
 		if (this.equals(COMPLETED)) {
 			if (result != null) {
 				status = result.toString();
 				Run previousBuild = run.getPreviousBuild();
 				Result previousResult = (previousBuild != null) ? previousBuild.getResult() : Result.SUCCESS;
 				
-				AbstractBuild failingSinceRun = null;
+				Run failingSinceRun = null;
 				if(run.getPreviousNotFailedBuild() != null) {
-					failingSinceRun = (AbstractBuild) (run.getPreviousNotFailedBuild().getNextBuild());
+					failingSinceRun = run.getPreviousNotFailedBuild().getNextBuild();
 				} else {
-					failingSinceRun = run.getProject().getFirstBuild();
+					failingSinceRun = job.getFirstBuild();
 				}
 				if (result == Result.SUCCESS && (previousResult == Result.FAILURE || previousResult == Result.UNSTABLE)) {
 					status = "BACK_TO_NORMAL";
@@ -166,7 +380,9 @@ public enum Phase {
 					BuildState failingSinceBuildState = new BuildState();
 					populateChangeSet(failingSinceRun, failingSinceBuildState, listener);
 					failingSinceBuildState.setNumber(failingSinceRun.number);
-					failingSinceBuildState.setFullUrl(rootUrl + failingSinceRun.getUrl());
+					if (rootUrl != null) {
+						failingSinceBuildState.setFullUrl(rootUrl + failingSinceRun.getUrl());
+					}
 					long failingSinceBuildCompletionTime = failingSinceRun.getStartTimeInMillis()
 							+ failingSinceRun.getDuration();
 					failingSinceBuildState.setCompletionTime(failingSinceBuildCompletionTime);
@@ -183,57 +399,82 @@ public enum Phase {
 		jobState.setUrl(job.getUrl());
 		jobState.setBuild(buildState);
 
-		buildState.setNumber(run.number);
-		buildState.setUrl(run.getUrl());
-		buildState.setPhase(this);
-		buildState.setScm(scmState);
-
-		if (rootUrl != null) {
-			buildState.setFullUrl(rootUrl + run.getUrl());
+		String qualifier = null;
+		if (stage != null) {
+			buildState.setStage(stage);
+			buildState.setStatus(stageStatus);
+			qualifier = stage;
 		}
 
-		// buildState.updateArtifacts(job, run);
-
-		if (paramsAction != null) {
-			EnvVars env = new EnvVars();
-			for (ParameterValue value : paramsAction.getParameters()) {
-				if (!value.isSensitive()) {
-					value.buildEnvironment(run, env);
-				}
-			}
-			buildState.setParameters(env);
+		if (this.equals(IN_PROGRESS)) {
+			long elapsedTime = System.currentTimeMillis() - run.getStartTimeInMillis();
+			buildState.setElapsedTime(elapsedTime);
+			buildState.setEstimatedDuration(run.getEstimatedDuration());
+			qualifier = Long.toString(elapsedTime);
 		}
-
-		if (environment.get("GIT_URL") != null) {
-			scmState.setUrl(environment.get("GIT_URL"));
+		if (step != null) {
+			qualifier = qualifier == null ? "step:" + step : qualifier + "#step:" + step;
 		}
+		jobState.setEventId(DeliveryId.forEvent(job.getFullName(), run.number, this, qualifier));
 
-		if (environment.get("GIT_BRANCH") != null) {
-			scmState.setBranch(environment.get("GIT_BRANCH"));
+		buildState.setNumber(run.number);
+		buildState.setUrl(snapshot.getUrl());
+		buildState.setPhase(this);
+		buildState.setScm(snapshot.getScm());
+
+		if (rootUrl != null) {
+			buildState.setFullUrl(rootUrl + snapshot.getUrl());
 		}
 
-		if (environment.get("GIT_COMMIT") != null) {
-			scmState.setCommit(environment.get("GIT_COMMIT"));
+		if (snapshot.getParameters() != null) {
+			buildState.setParameters(snapshot.getParameters());
 		}
 
 		if (this.equals(STARTED)) {
 			populateChangeSet(run, buildState, listener);
+			Executor executor = run.getExecutor();
+			if (executor != null) {
+				buildState.setQueueWaitTime(executor.getTimeSpentInQueue());
+				Computer computer = executor.getOwner();
+				buildState.setNode(Util.fixEmpty(computer.getName()) == null ? "master" : computer.getName());
+			}
 		}
 
 		return jobState;
 	}
 
-	private void populateChangeSet(AbstractBuild run, BuildState buildState, TaskListener listener) {
-		ChangeLogSet changeLogSet = run.getChangeSet();
-		List<Changeset> changesets = new ArrayList<Changeset>();
-		for (Object o : changeLogSet.getItems()) {
+	private void populateChangeSet(Run run, BuildState buildState, TaskListener listener) {
+		ChangesetCollector collector = new ChangesetCollector();
+		for (ChangeLogSet changeLogSet : getChangeSets(run)) {
+			for (Object o : changeLogSet.getItems()) {
+
+				Entry entry = (Entry) o;
+				DeliveryLog.event(DeliveryLog.Event.CHANGESET_ENTRY, listener.getLogger()).detail(entry).log();
+				collector.add(entry);
+			}
+		}
+		collector.populate(buildState);
+	}
 
-			Entry entry = (Entry) o;
-			listener.getLogger().println("Entry " + o);
-			Changeset changeset = new Changeset(entry.getAuthor().getDisplayName(), entry.getAuthor().getId(),
-					entry.getAffectedFiles());
-			changesets.add(changeset);
+	/**
+	 * Change sets of a build. Pipeline builds are not {@link AbstractBuild}s
+	 * but expose their change sets through {@code getChangeSets()}.
+	 */
+	private static List<ChangeLogSet> getChangeSets(Run run) {
+		if (run instanceof AbstractBuild) {
+			return Collections.<ChangeLogSet> singletonList(((AbstractBuild) run).getChangeSet());
+		}
+		try {
+			Method method = run.getClass().getMethod("getChangeSets");
+			Object changeSets = method.invoke(run);
+			if (changeSets instanceof List) {
+				return (List<ChangeLogSet>) changeSets;
+			}
+		} catch (NoSuchMethodException e) {
+			// this kind of build has no change sets
+		} catch (Exception e) {
+			LOGGER.log(Level.WARNING, "Unable to read change sets of " + run, e);
 		}
-		buildState.setChangeSet(changesets);
+		return Collections.emptyList();
 	}
 }
\ No newline at end of file
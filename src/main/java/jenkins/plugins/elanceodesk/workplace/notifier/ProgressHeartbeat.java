@@ -0,0 +1,98 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import hudson.Extension;
+import hudson.model.PeriodicWork;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends throttled {@link Phase#IN_PROGRESS} heartbeats for running builds
+ * whose job has a webhook asking for progress notifications.
+ * <p>
+ * Builds are registered by {@link JobListener} when they start and dropped
+ * when they complete, so each tick only looks at builds that want
+ * heartbeats.
+ */
+@SuppressWarnings("rawtypes")
+@Extension
+public class ProgressHeartbeat extends PeriodicWork {
+
+	/**
+	 * Minimum time between two heartbeats of the same build.
+	 */
+	static final long INTERVAL = TimeUnit.SECONDS.toMillis(Integer.getInteger(ProgressHeartbeat.class.getName()
+			+ ".intervalSeconds", 60));
+
+	private static final long TICK = Math.min(INTERVAL, TimeUnit.SECONDS.toMillis(10));
+
+	private static final Map<Run, Tracked> RUNS = new ConcurrentHashMap<Run, Tracked>();
+
+	static void register(Run run, TaskListener listener) {
+		for (Webhook webhook : EffectiveWebhooks.of(run.getParent())) {
+			if (webhook.isNotifyProgress()) {
+				RUNS.put(run, new Tracked(listener, System.currentTimeMillis() + INTERVAL));
+				return;
+			}
+		}
+	}
+
+	static void unregister(Run run) {
+		RUNS.remove(run);
+	}
+
+	@Override
+	public long getRecurrencePeriod() {
+		return TICK;
+	}
+
+	@Override
+	protected void doRun() {
+		beat(System.currentTimeMillis());
+	}
+
+	/**
+	 * Sends a heartbeat for each registered build that is due at the given
+	 * time, and drops builds that are no longer running.
+	 */
+	static void beat(long now) {
+		for (Map.Entry<Run, Tracked> entry : RUNS.entrySet()) {
+			Run run = entry.getKey();
+			Tracked tracked = entry.getValue();
+			if (!run.isBuilding()) {
+				RUNS.remove(run);
+			} else if (now >= tracked.next) {
+				tracked.next = now + INTERVAL;
+				Phase.IN_PROGRESS.handleAsync(run, tracked.listener);
+			}
+		}
+	}
+
+	private static final class Tracked {
+
+		private final TaskListener listener;
+
+		private volatile long next;
+
+		Tracked(TaskListener listener, long next) {
+			this.listener = listener;
+			this.next = next;
+		}
+	}
+}
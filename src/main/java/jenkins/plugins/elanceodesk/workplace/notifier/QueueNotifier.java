@@ -0,0 +1,65 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import hudson.Extension;
+import hudson.model.Job;
+import hudson.model.Queue;
+import hudson.model.Queue.BlockedItem;
+import hudson.model.Queue.LeftItem;
+import hudson.model.Queue.WaitingItem;
+import hudson.model.queue.QueueListener;
+
+/**
+ * Notifies webhooks when builds enter, get blocked in and leave the build
+ * queue.
+ * <p>
+ * The callbacks run while the queue is locked, so they only filter out jobs
+ * without interested webhooks and hand everything else to the notifier
+ * threads.
+ */
+@SuppressWarnings("rawtypes")
+@Extension
+public class QueueNotifier extends QueueListener {
+
+	@Override
+	public void onEnterWaiting(WaitingItem wi) {
+		handle(Phase.QUEUED, wi, null);
+	}
+
+	@Override
+	public void onEnterBlocked(BlockedItem bi) {
+		handle(Phase.BLOCKED, bi, null);
+	}
+
+	@Override
+	public void onLeft(LeftItem li) {
+		handle(Phase.LEFT_QUEUE, li, li.isCancelled());
+	}
+
+	private void handle(Phase phase, Queue.Item item, Boolean cancelled) {
+		if (item.task instanceof Job) {
+			phase.handleQueueAsync((Job) item.task, item, System.currentTimeMillis(), cancelled);
+		}
+	}
+
+	/**
+	 * Event id of a queue event. Queue ids start over when Jenkins restarts,
+	 * so the time the item entered the queue tells apart items that got the
+	 * same id.
+	 */
+	static String eventId(String jobFullName, Phase phase, long queueId, long inQueueSince) {
+		return DeliveryId.forEvent(jobFullName, 0, phase, Long.toString(queueId) + '@' + inQueueSince);
+	}
+}
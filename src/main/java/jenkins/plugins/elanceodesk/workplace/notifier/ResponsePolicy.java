@@ -0,0 +1,90 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import java.util.BitSet;
+
+/**
+ * Classifies webhook responses into success, retryable and terminal.
+ * <p>
+ * Codes are given as comma separated lists of codes and ranges, e.g.
+ * {@code "200-299"} or {@code "408,429,500-599"}. Any code that is neither a
+ * success nor retryable is terminal.
+ */
+public final class ResponsePolicy {
+
+	public enum Outcome {
+		SUCCESS, RETRY, TERMINAL
+	}
+
+	public static final String DEFAULT_SUCCESS_CODES = "200-299";
+
+	public static final String DEFAULT_RETRY_CODES = "408,429,500-599";
+
+	public static final ResponsePolicy DEFAULT = new ResponsePolicy(DEFAULT_SUCCESS_CODES, DEFAULT_RETRY_CODES);
+
+	private static final int MAX_CODE = 999;
+
+	private final BitSet success;
+
+	private final BitSet retry;
+
+	/**
+	 * @throws IllegalArgumentException
+	 *             if one of the code lists can not be parsed
+	 */
+	public ResponsePolicy(String successCodes, String retryCodes) {
+		this.success = parse(Utils.isEmpty(successCodes) ? DEFAULT_SUCCESS_CODES : successCodes);
+		this.retry = parse(Utils.isEmpty(retryCodes) ? DEFAULT_RETRY_CODES : retryCodes);
+		this.retry.andNot(success);
+	}
+
+	public Outcome classify(int statusCode) {
+		if (statusCode < 0 || statusCode > MAX_CODE) {
+			return Outcome.TERMINAL;
+		}
+		if (success.get(statusCode)) {
+			return Outcome.SUCCESS;
+		}
+		return retry.get(statusCode) ? Outcome.RETRY : Outcome.TERMINAL;
+	}
+
+	private static BitSet parse(String codes) {
+		BitSet set = new BitSet(MAX_CODE + 1);
+		for (String token : codes.split(",")) {
+			token = token.trim();
+			if (token.length() == 0) {
+				continue;
+			}
+			int dash = token.indexOf('-');
+			int from;
+			int to;
+			try {
+				if (dash < 0) {
+					from = to = Integer.parseInt(token);
+				} else {
+					from = Integer.parseInt(token.substring(0, dash).trim());
+					to = Integer.parseInt(token.substring(dash + 1).trim());
+				}
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException(String.format("Invalid status code '%s'", token));
+			}
+			if (from < 100 || to > MAX_CODE || from > to) {
+				throw new IllegalArgumentException(String.format("Invalid status code range '%s'", token));
+			}
+			set.set(from, to + 1);
+		}
+		return set;
+	}
+}
@@ -0,0 +1,55 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fixed size buffer keeping the most recent elements. Writers never block
+ * and readers only copy, so reading it for display never slows down the
+ * delivery threads that write to it.
+ */
+final class RingBuffer<T> {
+
+	private final AtomicReferenceArray<T> elements;
+
+	private final AtomicLong next = new AtomicLong();
+
+	RingBuffer(int capacity) {
+		this.elements = new AtomicReferenceArray<T>(capacity);
+	}
+
+	void add(T element) {
+		elements.set((int) (next.getAndIncrement() % elements.length()), element);
+	}
+
+	/**
+	 * Copy of the current elements, most recent first.
+	 */
+	List<T> snapshot() {
+		long end = next.get();
+		int size = (int) Math.min(end, elements.length());
+		List<T> snapshot = new ArrayList<T>(size);
+		for (long i = end - 1; i >= end - size; i--) {
+			T element = elements.get((int) (i % elements.length()));
+			if (element != null) {
+				snapshot.add(element);
+			}
+		}
+		return snapshot;
+	}
+}
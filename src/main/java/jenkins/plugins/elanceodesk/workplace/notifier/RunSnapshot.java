@@ -0,0 +1,151 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import hudson.EnvVars;
+import hudson.model.Cause;
+import hudson.model.ParameterValue;
+import hudson.model.ParametersAction;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import jenkins.model.Jenkins;
+import jenkins.plugins.elanceodesk.workplace.notifier.model.ScmState;
+
+/**
+ * Parts of the payload that do not change while a build runs: URLs, causes,
+ * parameters and SCM state.
+ * <p>
+ * Computed once by the first notification of a build and kept in memory
+ * only, never in the build's persisted actions, so later phases reuse it.
+ * Snapshots are dropped once the build is completed, or with the build
+ * object if it is unloaded before.
+ */
+@SuppressWarnings("rawtypes")
+public class RunSnapshot {
+
+	private static final Map<Run, RunSnapshot> SNAPSHOTS = new WeakHashMap<Run, RunSnapshot>();
+
+	private boolean initialized;
+
+	private String rootUrl;
+
+	private String url;
+
+	private List<String> causes;
+
+	private Map<String, String> parameters;
+
+	private ScmState scm;
+
+	/**
+	 * Returns the snapshot of the build, computing it on first use.
+	 */
+	static RunSnapshot of(Run run, TaskListener listener) throws IOException, InterruptedException {
+		RunSnapshot snapshot;
+		synchronized (SNAPSHOTS) {
+			snapshot = SNAPSHOTS.get(run);
+			if (snapshot == null) {
+				snapshot = new RunSnapshot();
+				SNAPSHOTS.put(run, snapshot);
+			}
+		}
+		synchronized (snapshot) {
+			if (!snapshot.initialized) {
+				snapshot.init(run, listener);
+			}
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Drops the snapshot of the build once no more notifications follow.
+	 */
+	static void release(Run run) {
+		synchronized (SNAPSHOTS) {
+			SNAPSHOTS.remove(run);
+		}
+	}
+
+	private void init(Run run, TaskListener listener) throws IOException, InterruptedException {
+		Jenkins jenkins = Jenkins.getInstance();
+		rootUrl = jenkins == null ? null : jenkins.getRootUrl();
+		url = run.getUrl();
+
+		List<Cause> runCauses = run.getCauses();
+		if (runCauses != null) {
+			List<String> causesStrList = new ArrayList<String>();
+			for (Cause cause : runCauses) {
+				causesStrList.add(cause.getShortDescription());
+			}
+			causes = Collections.unmodifiableList(causesStrList);
+		}
+
+		ParametersAction paramsAction = run.getAction(ParametersAction.class);
+		if (paramsAction != null) {
+			EnvVars env = new EnvVars();
+			for (ParameterValue value : paramsAction.getParameters()) {
+				if (!value.isSensitive()) {
+					value.buildEnvironment(run, env);
+				}
+			}
+			parameters = Collections.unmodifiableMap(env);
+		}
+
+		scm = readScm(run, listener);
+		initialized = true;
+	}
+
+	/**
+	 * Reads the SCM state again if it was not known yet when the snapshot was
+	 * taken, e.g. for Pipeline builds which check out after they started.
+	 */
+	synchronized void refreshScm(Run run, TaskListener listener) throws IOException, InterruptedException {
+		if (scm.getCommit() == null) {
+			scm = readScm(run, listener);
+		}
+	}
+
+	private static ScmState readScm(Run run, TaskListener listener) throws IOException, InterruptedException {
+		EnvVars environment = run.getEnvironment(listener);
+		return new ScmState(environment.get("GIT_URL"), environment.get("GIT_BRANCH"), environment.get("GIT_COMMIT"));
+	}
+
+	public String getRootUrl() {
+		return rootUrl;
+	}
+
+	public String getUrl() {
+		return url;
+	}
+
+	public List<String> getCauses() {
+		return causes;
+	}
+
+	public Map<String, String> getParameters() {
+		return parameters;
+	}
+
+	public synchronized ScmState getScm() {
+		return scm;
+	}
+}
@@ -0,0 +1,78 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import hudson.Extension;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+
+/**
+ * Writes payloads as lines to a TCP connection, e.g.
+ * {@code tcp://localhost:5170}, like a syslog or log shipper input.
+ * <p>
+ * The connection is kept open and shared by all deliveries to the address.
+ * A delivery completes once its line was flushed to the connection; there is
+ * no acknowledgement, so a line written just before the peer closed the
+ * connection may be lost.
+ */
+@Extension
+public class TcpSink extends DeliverySink.LineSink {
+
+	@Override
+	public String getScheme() {
+		return "tcp";
+	}
+
+	@Override
+	String getTarget(URI uri) {
+		return uri.getHost() == null ? null : uri.getHost() + ':' + uri.getPort();
+	}
+
+	@Override
+	public void validate(URI uri) {
+		super.validate(uri);
+		if (uri.getPort() < 0) {
+			throw new IllegalArgumentException(String.format("No port in '%s'", uri));
+		}
+	}
+
+	@Override
+	LineStream open(final URI uri) {
+		return new LineStream() {
+			@Override
+			protected OutputStream open(int timeout) throws IOException {
+				IOException failure = null;
+				for (InetAddress address : DnsCache.DEFAULT.resolve(uri.getHost())) {
+					Socket socket = new Socket();
+					try {
+						socket.setTcpNoDelay(true);
+						socket.connect(new InetSocketAddress(address, uri.getPort()), timeout);
+						socket.shutdownInput();
+						return new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE);
+					} catch (IOException e) {
+						socket.close();
+						failure = e;
+					}
+				}
+				throw failure;
+			}
+		};
+	}
+}
@@ -0,0 +1,95 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import hudson.model.Run;
+import hudson.tasks.junit.CaseResult;
+import hudson.tasks.test.AbstractTestResultAction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import jenkins.plugins.elanceodesk.workplace.notifier.model.TestSummary;
+
+/**
+ * Test results of a completed build, read at most once however many
+ * webhooks ask for them.
+ * <p>
+ * Counts come from the test result action, which keeps them with the build,
+ * so they never load the report. Only if a webhook asks for the names of
+ * newly failing tests are the failed tests read, and at most
+ * {@link #MAX_FAILED_TESTS} names are sent.
+ */
+@SuppressWarnings("rawtypes")
+final class TestReport {
+
+	static final int MAX_FAILED_TESTS = Integer.getInteger(TestReport.class.getName() + ".maxFailedTests", 20);
+
+	private final Run run;
+
+	private boolean read;
+
+	private AbstractTestResultAction action;
+
+	private TestSummary counts;
+
+	private TestSummary withNames;
+
+	TestReport(Run run) {
+		this.run = run;
+	}
+
+	/**
+	 * @param failedTests
+	 *            whether to include names of newly failing tests
+	 * @return {@code null} if the build has no test results
+	 */
+	TestSummary getSummary(boolean failedTests) {
+		if (!read) {
+			read = true;
+			action = run.getAction(AbstractTestResultAction.class);
+			if (action != null) {
+				counts = new TestSummary(action.getTotalCount(), action.getFailCount(), action.getSkipCount(), null,
+						null);
+			}
+		}
+		if (counts == null || !failedTests) {
+			return counts;
+		}
+		if (withNames == null) {
+			withNames = readNewlyFailing();
+		}
+		return withNames;
+	}
+
+	private TestSummary readNewlyFailing() {
+		List<String> names = new ArrayList<String>();
+		boolean truncated = false;
+		if (counts.getFailed() > 0) {
+			for (Object test : action.getFailedTests()) {
+				if (!(test instanceof CaseResult) || ((CaseResult) test).getAge() != 1) {
+					continue;
+				}
+				if (names.size() == MAX_FAILED_TESTS) {
+					truncated = true;
+					break;
+				}
+				names.add(((CaseResult) test).getFullName());
+			}
+		}
+		return new TestSummary(counts.getTotal(), counts.getFailed(), counts.getSkipped(),
+				Collections.unmodifiableList(names), truncated ? Boolean.TRUE : null);
+	}
+}
@@ -15,8 +15,10 @@
 package jenkins.plugins.elanceodesk.workplace.notifier;
 
 import hudson.util.FormValidation;
+import hudson.util.Secret;
 
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.QueryParameter;
 
 public class Webhook {
@@ -40,6 +42,40 @@ public class Webhook {
 	private boolean notifyBackToNormal;
 
 	private int timeout;
+
+	private boolean notifyStages;
+
+	private boolean notifyProgress;
+
+	private boolean notifyQueue;
+
+	private Secret secret;
+
+	private String successCodes;
+
+	private String retryCodes;
+
+	private String format;
+
+	private String template;
+
+	private String templateContentType;
+
+	private String artifacts;
+
+	private boolean testSummary;
+
+	private boolean failedTests;
+
+	private boolean compress;
+
+	private String folder;
+
+	private transient ResponsePolicy responsePolicy;
+
+	private transient PayloadTemplate payloadTemplate;
+
+	private transient WebhookEndpoint endpoint;
 	
 	@DataBoundConstructor
 	public Webhook(String url, boolean startNotification, boolean notifySuccess, boolean notifyAborted,
@@ -92,6 +128,256 @@ public class Webhook {
 		return timeout;
 	}
 
+	public boolean isNotifyStages() {
+		return notifyStages;
+	}
+
+	@DataBoundSetter
+	public void setNotifyStages(boolean notifyStages) {
+		this.notifyStages = notifyStages;
+	}
+
+	/**
+	 * Whether running builds send periodic {@link Phase#IN_PROGRESS} heartbeats.
+	 */
+	public boolean isNotifyProgress() {
+		return notifyProgress;
+	}
+
+	@DataBoundSetter
+	public void setNotifyProgress(boolean notifyProgress) {
+		this.notifyProgress = notifyProgress;
+	}
+
+	public boolean isNotifyQueue() {
+		return notifyQueue;
+	}
+
+	@DataBoundSetter
+	public void setNotifyQueue(boolean notifyQueue) {
+		this.notifyQueue = notifyQueue;
+	}
+
+	/**
+	 * Shared secret used to sign payloads, or {@code null} if requests are sent unsigned.
+	 */
+	public Secret getSecret() {
+		return secret;
+	}
+
+	@DataBoundSetter
+	public void setSecret(Secret secret) {
+		this.secret = (secret == null || Utils.isEmpty(secret.getPlainText())) ? null : secret;
+	}
+
+	public String getSuccessCodes() {
+		return successCodes;
+	}
+
+	@DataBoundSetter
+	public void setSuccessCodes(String successCodes) {
+		this.successCodes = Utils.isEmpty(successCodes) ? null : successCodes.trim();
+		this.responsePolicy = null;
+	}
+
+	public String getRetryCodes() {
+		return retryCodes;
+	}
+
+	@DataBoundSetter
+	public void setRetryCodes(String retryCodes) {
+		this.retryCodes = Utils.isEmpty(retryCodes) ? null : retryCodes.trim();
+		this.responsePolicy = null;
+	}
+
+	/**
+	 * Name of the {@link PayloadFormat}, {@code null} for JSON.
+	 */
+	public String getFormat() {
+		return format;
+	}
+
+	@DataBoundSetter
+	public void setFormat(String format) {
+		this.format = Utils.isEmpty(format) ? null : PayloadFormat.fromName(format).name();
+	}
+
+	public PayloadFormat getPayloadFormat() {
+		return PayloadFormat.fromName(format);
+	}
+
+	/**
+	 * Request body template, {@code null} to send the payload format.
+	 */
+	public String getTemplate() {
+		return template;
+	}
+
+	@DataBoundSetter
+	public void setTemplate(String template) {
+		this.template = Utils.isEmpty(template) ? null : template;
+		this.payloadTemplate = null;
+	}
+
+	public String getTemplateContentType() {
+		return templateContentType;
+	}
+
+	@DataBoundSetter
+	public void setTemplateContentType(String templateContentType) {
+		this.templateContentType = Utils.isEmpty(templateContentType) ? null : templateContentType.trim();
+		this.payloadTemplate = null;
+	}
+
+	/**
+	 * Comma separated Ant style patterns of archived artifacts whose URLs are
+	 * sent when the build completes, {@code null} to send none.
+	 */
+	public String getArtifacts() {
+		return artifacts;
+	}
+
+	@DataBoundSetter
+	public void setArtifacts(String artifacts) {
+		this.artifacts = Utils.isEmpty(artifacts) ? null : artifacts.trim();
+	}
+
+	/**
+	 * Whether the payload of a completed build carries test result counts.
+	 */
+	public boolean isTestSummary() {
+		return testSummary;
+	}
+
+	@DataBoundSetter
+	public void setTestSummary(boolean testSummary) {
+		this.testSummary = testSummary;
+	}
+
+	/**
+	 * Whether the test summary lists the tests that started failing.
+	 */
+	public boolean isFailedTests() {
+		return failedTests;
+	}
+
+	@DataBoundSetter
+	public void setFailedTests(boolean failedTests) {
+		this.failedTests = failedTests;
+	}
+
+	/**
+	 * Whether request bodies are sent gzip compressed.
+	 */
+	public boolean isCompress() {
+		return compress;
+	}
+
+	@DataBoundSetter
+	public void setCompress(boolean compress) {
+		this.compress = compress;
+	}
+
+	/**
+	 * Full name of the folder whose jobs a globally configured webhook
+	 * applies to, {@code null} for all jobs. Not used for webhooks of a job.
+	 */
+	public String getFolder() {
+		return folder;
+	}
+
+	@DataBoundSetter
+	public void setFolder(String folder) {
+		String name = folder == null ? "" : folder.trim();
+		while (name.startsWith("/")) {
+			name = name.substring(1);
+		}
+		while (name.endsWith("/")) {
+			name = name.substring(0, name.length() - 1);
+		}
+		this.folder = name.length() == 0 ? null : name;
+	}
+
+	/**
+	 * Whether a globally configured webhook applies to the job with the full
+	 * name.
+	 */
+	public boolean appliesTo(String jobFullName) {
+		return folder == null || jobFullName.startsWith(folder + "/");
+	}
+
+	/**
+	 * Compiles the template, so that invalid templates are rejected when the
+	 * configuration is saved rather than at the first notification.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the template is invalid
+	 */
+	public void compileTemplate() {
+		payloadTemplate = template == null ? null : PayloadTemplate.compile(template, templateContentType);
+	}
+
+	/**
+	 * Parses the URL, so that invalid URLs are rejected when the configuration
+	 * is saved and requests do not parse it again.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the URL is invalid
+	 */
+	public void parseEndpoint() {
+		endpoint = WebhookEndpoint.parse(url);
+	}
+
+	/**
+	 * Parsed URL.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the URL, loaded from disk, is invalid
+	 */
+	public WebhookEndpoint getEndpoint() {
+		WebhookEndpoint parsed = endpoint;
+		if (parsed == null) {
+			// loaded from disk
+			parsed = WebhookEndpoint.parse(url);
+			endpoint = parsed;
+		}
+		return parsed;
+	}
+
+	/**
+	 * Encoder of the request body: the compiled template if there is one,
+	 * otherwise the payload format.
+	 */
+	public PayloadCodec getCodec() {
+		if (template == null) {
+			return getPayloadFormat();
+		}
+		PayloadTemplate compiled = payloadTemplate;
+		if (compiled == null) {
+			// loaded from disk
+			compiled = PayloadTemplate.compile(template, templateContentType);
+			payloadTemplate = compiled;
+		}
+		return compiled;
+	}
+
+	/**
+	 * Policy deciding which responses are successful, retried or given up on.
+	 * Falls back to the default policy if the configured codes are invalid.
+	 */
+	public ResponsePolicy getResponsePolicy() {
+		ResponsePolicy policy = responsePolicy;
+		if (policy == null) {
+			try {
+				policy = new ResponsePolicy(successCodes, retryCodes);
+			} catch (IllegalArgumentException e) {
+				policy = ResponsePolicy.DEFAULT;
+			}
+			responsePolicy = policy;
+		}
+		return policy;
+	}
+
     public FormValidation doCheckURL(@QueryParameter(value = "url", fixEmpty = true) String url) {
         if (url.equals("111"))
             return FormValidation.ok();
@@ -0,0 +1,207 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.httpclient.HostConfiguration;
+import org.apache.commons.httpclient.methods.PostMethod;
+import org.apache.commons.httpclient.protocol.Protocol;
+
+/**
+ * Webhook URL parsed once, when the configuration is saved or the URL is
+ * first posted to.
+ * <p>
+ * Requests are built from the parsed parts and connect through
+ * {@link EndpointSocketFactory}, so host names are resolved through the
+ * {@link DnsCache} rather than on every connection. URLs with another scheme
+ * are sent to the {@link DeliverySink} for it.
+ */
+public final class WebhookEndpoint {
+
+	private static final int MAX_PARSED = 1024;
+
+	private static final Protocol HTTP = new Protocol("http", new EndpointSocketFactory(), 80);
+
+	private static final Protocol HTTPS = new Protocol("https", new EndpointSocketFactory.Secure(), 443);
+
+	/**
+	 * URLs of outbox entries and other callers without a webhook.
+	 */
+	private static final ConcurrentMap<String, WebhookEndpoint> PARSED = new ConcurrentHashMap<String, WebhookEndpoint>();
+
+	private final String url;
+
+	private final URI uri;
+
+	/**
+	 * {@code null} for sink endpoints.
+	 */
+	private final Protocol protocol;
+
+	/**
+	 * {@code null} for http and https endpoints.
+	 */
+	private final DeliverySink sink;
+
+	private final String host;
+
+	private final int port;
+
+	private final String path;
+
+	private final String query;
+
+	private WebhookEndpoint(String url, URI uri, Protocol protocol, DeliverySink sink, String host, int port,
+			String path, String query) {
+		this.url = url;
+		this.uri = uri;
+		this.protocol = protocol;
+		this.sink = sink;
+		this.host = host;
+		this.port = port;
+		this.path = path;
+		this.query = query;
+	}
+
+	/**
+	 * @throws IllegalArgumentException
+	 *             if the URL is not an absolute http or https URL, or one
+	 *             a sink accepts
+	 */
+	public static WebhookEndpoint parse(String url) {
+		if (Utils.isEmpty(url)) {
+			throw new IllegalArgumentException("URL is empty");
+		}
+		URI uri;
+		try {
+			uri = new URI(url.trim());
+		} catch (URISyntaxException e) {
+			throw new IllegalArgumentException(e.getMessage(), e);
+		}
+		String scheme = uri.getScheme() == null ? null : uri.getScheme().toLowerCase();
+		Protocol protocol;
+		if ("http".equals(scheme)) {
+			protocol = HTTP;
+		} else if ("https".equals(scheme)) {
+			protocol = HTTPS;
+		} else if ("unix".equals(scheme)) {
+			// Java runtimes Jenkins supports cannot open Unix domain sockets
+			throw new IllegalArgumentException(String.format(
+					"Unix domain sockets are not supported in '%s', use a tcp or file URL", url));
+		} else {
+			DeliverySink sink = DeliverySink.forScheme(scheme);
+			if (sink == null) {
+				throw new IllegalArgumentException(String.format(
+						"Unsupported scheme in '%s', expected http, https or the scheme of a sink", url));
+			}
+			sink.validate(uri);
+			return new WebhookEndpoint(url, uri, null, sink, uri.getHost(), uri.getPort(), uri.getRawPath(),
+					uri.getRawQuery());
+		}
+		if (uri.getHost() == null) {
+			throw new IllegalArgumentException(String.format("No host in '%s'", url));
+		}
+		String path = Utils.isEmpty(uri.getRawPath()) ? "/" : uri.getRawPath();
+		return new WebhookEndpoint(url, uri, protocol, null, uri.getHost(), uri.getPort() < 0 ? protocol
+				.getDefaultPort() : uri.getPort(), path, uri.getRawQuery());
+	}
+
+	/**
+	 * Parsed URL, cached for URLs that are posted to repeatedly.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the URL is invalid
+	 */
+	static WebhookEndpoint of(String url) {
+		WebhookEndpoint endpoint = PARSED.get(url);
+		if (endpoint == null) {
+			endpoint = parse(url);
+			if (PARSED.size() >= MAX_PARSED) {
+				PARSED.clear();
+			}
+			PARSED.put(url, endpoint);
+		}
+		return endpoint;
+	}
+
+	public String getUrl() {
+		return url;
+	}
+
+	public URI getUri() {
+		return uri;
+	}
+
+	/**
+	 * Sink payloads are sent to instead of posting them, {@code null} for
+	 * http and https endpoints.
+	 */
+	public DeliverySink getSink() {
+		return sink;
+	}
+
+	public String getHost() {
+		return host;
+	}
+
+	public int getPort() {
+		return port;
+	}
+
+	public boolean isSecure() {
+		return protocol == HTTPS;
+	}
+
+	/**
+	 * Raw path, {@code /} if the URL has none.
+	 */
+	public String getPath() {
+		return path;
+	}
+
+	/**
+	 * Raw query, {@code null} if the URL has none.
+	 */
+	public String getQuery() {
+		return query;
+	}
+
+	/**
+	 * Points the host configuration, which may carry a proxy, at this
+	 * endpoint.
+	 */
+	void configure(HostConfiguration hostConfiguration) {
+		hostConfiguration.setHost(host, port, protocol);
+	}
+
+	/**
+	 * A request to this endpoint, sent to the host set by
+	 * {@link #configure(HostConfiguration)}.
+	 */
+	PostMethod newPost() {
+		PostMethod post = new PostMethod();
+		post.setPath(path);
+		post.setQueryString(query);
+		return post;
+	}
+
+	@Override
+	public String toString() {
+		return url;
+	}
+}
@@ -16,12 +16,13 @@ package jenkins.plugins.elanceodesk.workplace.notifier;
 import hudson.model.BuildListener;
 import hudson.model.JobProperty;
 import hudson.model.AbstractBuild;
-import hudson.model.AbstractProject;
+import hudson.model.Job;
 
 import java.util.ArrayList;
 import java.util.List;
 
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 
 /**
  * 
@@ -29,10 +30,12 @@ import org.kohsuke.stapler.DataBoundConstructor;
  *
  */
 public class WebhookJobProperty extends
-        JobProperty<AbstractProject<?, ?>> {
+        JobProperty<Job<?, ?>> {
 
     public final List<Webhook> webhooks;
 
+    private boolean skipInherited;
+
     @DataBoundConstructor
     public WebhookJobProperty(List<Webhook> webhooks) {
         this.webhooks = new ArrayList<Webhook>( webhooks );
@@ -42,6 +45,19 @@ public class WebhookJobProperty extends
         return webhooks;
     }
 
+    /**
+     * Whether the job only notifies its own webhooks, not the global and
+     * folder webhooks.
+     */
+    public boolean isSkipInherited() {
+        return skipInherited;
+    }
+
+    @DataBoundSetter
+    public void setSkipInherited(boolean skipInherited) {
+        this.skipInherited = skipInherited;
+    }
+
     @Override
     public WebhookJobPropertyDescriptor getDescriptor() {
         return (WebhookJobPropertyDescriptor) super.getDescriptor();
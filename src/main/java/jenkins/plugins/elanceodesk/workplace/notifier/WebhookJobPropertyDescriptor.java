@@ -24,8 +24,6 @@ import net.sf.json.JSONObject;
 import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest;
 
-import java.net.MalformedURLException;
-import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -48,12 +46,16 @@ public final class WebhookJobPropertyDescriptor extends JobPropertyDescriptor {
         return !webhooks.isEmpty();
     }
 
+    /**
+     * Webhooks inherited by all jobs, or by the jobs of their folder.
+     */
     public List<Webhook> getTargets() {
         return webhooks;
     }
 
     public void setWebhooks(List<Webhook> webhooks) {
         this.webhooks = new ArrayList<Webhook>( webhooks );
+        EffectiveWebhooks.invalidate();
     }
 
     @Override
@@ -70,9 +72,26 @@ public final class WebhookJobPropertyDescriptor extends JobPropertyDescriptor {
         return Webhook.DEFAULT_TIMEOUT;
     }
 
+    public PayloadFormat[] getPayloadFormats() {
+        return PayloadFormat.values();
+    }
+
     @Override
     public WebhookJobProperty newInstance(StaplerRequest req, JSONObject formData) throws FormException {
+        WebhookJobProperty notificationProperty = new WebhookJobProperty(bindWebhooks(req, formData, false));
+        notificationProperty.setSkipInherited(formData != null && !formData.isNullObject()
+                && formData.optBoolean("skipInherited"));
+        return notificationProperty;
+    }
 
+    /**
+     * Binds the webhooks of a form, parsing their URLs and compiling their
+     * templates so that invalid ones are rejected when the form is saved.
+     * Sinks write to the controller's files and local services, so only the
+     * global configuration may use them.
+     */
+    private List<Webhook> bindWebhooks(StaplerRequest req, JSONObject formData, boolean global)
+            throws FormException {
         List<Webhook> webhooks = new ArrayList<Webhook>();
         if (formData != null && !formData.isNullObject()) {
             JSON webhooksData = (JSON) formData.get("webhooks");
@@ -86,21 +105,72 @@ public final class WebhookJobPropertyDescriptor extends JobPropertyDescriptor {
                 }
             }
         }
-        WebhookJobProperty notificationProperty = new WebhookJobProperty(webhooks);
-        return notificationProperty;
+        for (Webhook webhook : webhooks) {
+            try {
+                webhook.parseEndpoint();
+            } catch (IllegalArgumentException e) {
+                throw new FormException(String.format("Invalid URL for webhook '%s': %s", webhook,
+                        e.getMessage()), e, "url");
+            }
+            if (!global && webhook.getEndpoint().getSink() != null) {
+                throw new FormException(String.format("Webhook '%s' can only be set up in the global "
+                        + "configuration, jobs can only use http and https URLs", webhook), "url");
+            }
+            try {
+                webhook.compileTemplate();
+            } catch (IllegalArgumentException e) {
+                throw new FormException(String.format("Invalid template for webhook '%s': %s", webhook,
+                        e.getMessage()), e, "template");
+            }
+        }
+        return webhooks;
     }
 
     public FormValidation doCheckUrl(@QueryParameter(value = "url", fixEmpty = true) String url) {
     	try {
-			new URL(url);
-		} catch (MalformedURLException e) {
+			WebhookEndpoint.parse(url);
+		} catch (IllegalArgumentException e) {
 			return FormValidation.error(e.getMessage());
 		}
 		return FormValidation.ok();
     }
 
+    public FormValidation doCheckTemplate(@QueryParameter String value) {
+        if (Utils.isEmpty(value)) {
+            return FormValidation.ok();
+        }
+        try {
+            PayloadTemplate.compile(value, null);
+        } catch (IllegalArgumentException e) {
+            return FormValidation.error(e.getMessage());
+        }
+        return FormValidation.ok();
+    }
+
+    public FormValidation doCheckSuccessCodes(@QueryParameter String value) {
+        return checkCodes(value, null);
+    }
+
+    public FormValidation doCheckRetryCodes(@QueryParameter String value) {
+        return checkCodes(null, value);
+    }
+
+    private FormValidation checkCodes(String successCodes, String retryCodes) {
+        try {
+            new ResponsePolicy(successCodes, retryCodes);
+        } catch (IllegalArgumentException e) {
+            return FormValidation.error(e.getMessage());
+        }
+        return FormValidation.ok();
+    }
+
+    /**
+     * Saves the global webhooks. Jobs pick them up with their next
+     * notification, without saving any job.
+     */
     @Override
-    public boolean configure(StaplerRequest req, JSONObject formData) {
+    public boolean configure(StaplerRequest req, JSONObject formData) throws FormException {
+        setWebhooks(bindWebhooks(req, formData, true));
         save();
         return true;
     }
@@ -0,0 +1,125 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import hudson.Extension;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.UUID;
+
+import javax.inject.Inject;
+
+import org.jenkinsci.plugins.workflow.steps.AbstractStepDescriptorImpl;
+import org.jenkinsci.plugins.workflow.steps.AbstractStepExecutionImpl;
+import org.jenkinsci.plugins.workflow.steps.AbstractStepImpl;
+import org.jenkinsci.plugins.workflow.steps.StepContextParameter;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+/**
+ * Pipeline step notifying the webhooks of the job, e.g.
+ * {@code workplaceNotify phase: 'STARTED'} once the sources are checked out.
+ * <p>
+ * The step only schedules the notification. Building the payload and
+ * delivering it happens on the notifier threads, so the CPS VM thread is
+ * never blocked. Each run of the step is a separate event, with its own
+ * event id and the SCM state read again.
+ */
+public class WebhookNotifyStep extends AbstractStepImpl {
+
+	/**
+	 * Phases a step can report. Completion, stages and queue events are
+	 * reported by the build, {@link WebhookStageStep} and the queue.
+	 */
+	static final Set<Phase> PHASES = EnumSet.of(Phase.STARTED, Phase.IN_PROGRESS);
+
+	private String phase = Phase.STARTED.name();
+
+	@DataBoundConstructor
+	public WebhookNotifyStep() {
+	}
+
+	public String getPhase() {
+		return phase;
+	}
+
+	/**
+	 * @throws IllegalArgumentException
+	 *             if the phase is not one of {@link #PHASES}
+	 */
+	@DataBoundSetter
+	public void setPhase(String phase) {
+		String name = Utils.isEmpty(phase) ? Phase.STARTED.name() : phase.trim().toUpperCase();
+		for (Phase value : PHASES) {
+			if (value.name().equals(name)) {
+				this.phase = name;
+				return;
+			}
+		}
+		throw new IllegalArgumentException(String.format("Unsupported phase '%s', expected one of %s", phase, PHASES));
+	}
+
+	public static class Execution extends AbstractStepExecutionImpl {
+
+		private static final long serialVersionUID = 1L;
+
+		@StepContextParameter
+		private transient Run<?, ?> run;
+
+		@StepContextParameter
+		private transient TaskListener listener;
+
+		@Inject
+		private transient WebhookNotifyStep step;
+
+		/**
+		 * Identifies this run of the step in the event id.
+		 */
+		private String id;
+
+		@Override
+		public boolean start() throws Exception {
+			id = UUID.randomUUID().toString();
+			Phase.valueOf(step.getPhase()).handleStepAsync(run, listener, id);
+			getContext().onSuccess(null);
+			return true;
+		}
+
+		@Override
+		public void stop(Throwable cause) throws Exception {
+			// nothing to stop, the step completes synchronously
+		}
+	}
+
+	@Extension(optional = true)
+	public static class DescriptorImpl extends AbstractStepDescriptorImpl {
+
+		public DescriptorImpl() {
+			super(Execution.class);
+		}
+
+		@Override
+		public String getFunctionName() {
+			return "workplaceNotify";
+		}
+
+		@Override
+		public String getDisplayName() {
+			return "Notify workplace webhooks";
+		}
+	}
+}
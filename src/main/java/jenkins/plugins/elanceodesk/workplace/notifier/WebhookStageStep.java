@@ -0,0 +1,158 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import hudson.Extension;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.inject.Inject;
+
+import org.jenkinsci.plugins.workflow.steps.AbstractStepDescriptorImpl;
+import org.jenkinsci.plugins.workflow.steps.AbstractStepExecutionImpl;
+import org.jenkinsci.plugins.workflow.steps.AbstractStepImpl;
+import org.jenkinsci.plugins.workflow.steps.BodyExecution;
+import org.jenkinsci.plugins.workflow.steps.BodyExecutionCallback;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepContextParameter;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+/**
+ * Pipeline block step reporting a stage to the webhooks of the job, e.g.
+ * {@code workplaceStage('Build') { ... }}. Sends
+ * {@link Phase#STAGE_STARTED} before the body runs and
+ * {@link Phase#STAGE_COMPLETED} with {@code SUCCESS} or {@code FAILURE}
+ * once it is done. Like {@link WebhookNotifyStep}, notifications are only
+ * scheduled from the CPS VM thread. Each run of the step has its own event
+ * ids, so repeated and parallel stages of the same name do not collide.
+ */
+public class WebhookStageStep extends AbstractStepImpl {
+
+	private static final Logger LOGGER = Logger.getLogger(WebhookStageStep.class.getName());
+
+	private final String name;
+
+	@DataBoundConstructor
+	public WebhookStageStep(String name) {
+		this.name = Utils.verifyNotEmpty(name);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public static class Execution extends AbstractStepExecutionImpl {
+
+		private static final long serialVersionUID = 1L;
+
+		@StepContextParameter
+		private transient Run<?, ?> run;
+
+		@StepContextParameter
+		private transient TaskListener listener;
+
+		@Inject
+		private transient WebhookStageStep step;
+
+		/**
+		 * Identifies this run of the step in the event ids.
+		 */
+		private String id;
+
+		private BodyExecution body;
+
+		@Override
+		public boolean start() throws Exception {
+			id = UUID.randomUUID().toString();
+			Phase.STAGE_STARTED.handleStageAsync(run, listener, step.getName(), null, id);
+			body = getContext().newBodyInvoker().withCallback(new Callback(step.getName(), id)).start();
+			return false;
+		}
+
+		/**
+		 * Cancels the body, whose callback then reports the stage as failed
+		 * and completes the step.
+		 */
+		@Override
+		public void stop(Throwable cause) throws Exception {
+			if (body != null) {
+				body.cancel(cause);
+			} else {
+				getContext().onFailure(cause);
+			}
+		}
+	}
+
+	private static final class Callback extends BodyExecutionCallback {
+
+		private static final long serialVersionUID = 1L;
+
+		private final String stage;
+
+		private final String id;
+
+		Callback(String stage, String id) {
+			this.stage = stage;
+			this.id = id;
+		}
+
+		@Override
+		public void onSuccess(StepContext context, Object result) {
+			notifyCompleted(context, "SUCCESS");
+			context.onSuccess(result);
+		}
+
+		@Override
+		public void onFailure(StepContext context, Throwable t) {
+			notifyCompleted(context, "FAILURE");
+			context.onFailure(t);
+		}
+
+		private void notifyCompleted(StepContext context, String status) {
+			try {
+				Phase.STAGE_COMPLETED.handleStageAsync(context.get(Run.class), context.get(TaskListener.class),
+						stage, status, id);
+			} catch (Exception e) {
+				LOGGER.log(Level.WARNING, String.format("Unable to notify completion of stage '%s'", stage), e);
+			}
+		}
+	}
+
+	@Extension(optional = true)
+	public static class DescriptorImpl extends AbstractStepDescriptorImpl {
+
+		public DescriptorImpl() {
+			super(Execution.class);
+		}
+
+		@Override
+		public String getFunctionName() {
+			return "workplaceStage";
+		}
+
+		@Override
+		public String getDisplayName() {
+			return "Report a stage to workplace webhooks";
+		}
+
+		@Override
+		public boolean takesImplicitBlockArgument() {
+			return true;
+		}
+	}
+}
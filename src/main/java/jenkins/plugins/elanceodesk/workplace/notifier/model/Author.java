@@ -0,0 +1,65 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier.model;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Author of a change. Instances are interned by id, so all changesets of
+ * the same author share one object and one copy of its strings.
+ */
+public final class Author {
+
+	private static final int MAX_INTERNED = 4096;
+
+	private static final ConcurrentMap<String, Author> INTERNED = new ConcurrentHashMap<String, Author>();
+
+	private final String displayName;
+
+	private final String id;
+
+	private Author(String displayName, String id) {
+		this.displayName = displayName;
+		this.id = id;
+	}
+
+	public static Author of(String displayName, String id) {
+		if (id == null) {
+			return new Author(displayName, null);
+		}
+		Author author = INTERNED.get(id);
+		if (author != null && equal(author.displayName, displayName)) {
+			return author;
+		}
+		if (INTERNED.size() >= MAX_INTERNED) {
+			INTERNED.clear();
+		}
+		author = new Author(displayName, id);
+		INTERNED.put(id, author);
+		return author;
+	}
+
+	public String getDisplayName() {
+		return displayName;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	private static boolean equal(String a, String b) {
+		return a == null ? b == null : a.equals(b);
+	}
+}
@@ -13,7 +13,6 @@
  */
 package jenkins.plugins.elanceodesk.workplace.notifier.model;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -39,6 +38,10 @@ public class BuildState {
     private Map<String, String> parameters;
     
     private List<Changeset> changeSet;
+
+    private Boolean changeSetTruncated;
+
+    private ChangesetSummary changeSetSummary;
     
     private List<String> causes;
 
@@ -51,18 +54,37 @@ public class BuildState {
     private String failingSinceTime;
     
     private String backToNormalTime;
+
+    private String stage;
+
+    private Long elapsedTime;
+
+    private Long estimatedDuration;
+
+    private Long queueId;
+
+    private Long inQueueSince;
+
+    private Long queueWaitTime;
+
+    private String queueReason;
+
+    private Boolean cancelled;
+
+    private String node;
     
-//    /**
-//     *  Map of artifacts: file name => Map of artifact locations ( location name => artifact URL )
-//     *  ---
-//     *  artifacts:
-//     *   notification.hpi:
-//     *     s3: https://s3-eu-west-1.amazonaws.com/evgenyg-bakery-artifacts/jobs/notification-plugin/78/notification.hpi
-//     *     archive: http://localhost:8080/job/notification-plugin/78/artifact/target/notification.hpi
-//     *   notification.jar:
-//     *     archive: http://localhost:8080/job/notification-plugin/78/artifact/target/notification.jar
-//     */
-//    private final Map<String, Map<String, String>> artifacts = new HashMap<String, Map<String, String>>();
+    /**
+     *  Map of artifacts: relative path => Map of artifact locations ( location name => artifact URL )
+     *  ---
+     *  artifacts:
+     *   target/notification.hpi:
+     *     archive: http://localhost:8080/job/notification-plugin/78/artifact/target/notification.hpi
+     */
+    private Map<String, Map<String, String>> artifacts;
+
+    private Boolean artifactsTruncated;
+
+    private TestSummary testSummary;
 
     public int getNumber() {
         return number;
@@ -108,14 +130,13 @@ public class BuildState {
         return parameters;
     }
 
+    /**
+     * The map is kept as is, callers must not modify it afterwards.
+     */
     public void setParameters(Map<String, String> params) {
-        this.parameters = new HashMap<String, String>( params );
+        this.parameters = params;
     }
 
-//    public Map<String, Map<String, String>> getArtifacts () {
-//        return artifacts;
-//    }
-
     public void setDisplayName(String displayName) {
         this.displayName = displayName;
     }
@@ -135,54 +156,6 @@ public class BuildState {
     }
 
 
-	// /**
-	// * Updates artifacts Map with S3 links, if corresponding publisher is
-	// available.
-	// */
-	// public void updateArtifacts ( Job job, Run run )
-	// {
-	// updateArchivedArtifacts( run );
-	// }
-
-
-    
-//	private void updateArchivedArtifacts ( Run run )
-//    {
-//        @SuppressWarnings( "unchecked" )
-//        List<Run.Artifact> buildArtifacts = run.getArtifacts();
-//
-//        if ( buildArtifacts == null ) { return; }
-//
-//        for ( Run.Artifact a : buildArtifacts ) {
-//            String artifactUrl = Jenkins.getInstance().getRootUrl() + run.getUrl() + "artifact/" + a.getHref();
-//            updateArtifact( a.getFileName(), "archive", artifactUrl );
-//        }
-//    }
-//
-//    /**
-//     * Updates an artifact URL.
-//     *
-//     * @param fileName     artifact file name
-//     * @param locationName artifact location name, like "s3" or "archive"
-//     * @param locationUrl  artifact URL at the location specified
-//     */
-//    private void updateArtifact( String fileName, String locationName, String locationUrl )
-//    {
-//        verifyNotEmpty( fileName, locationName, locationUrl );
-//
-//        if ( ! artifacts.containsKey( fileName )) {
-//            artifacts.put( fileName, new HashMap<String, String>());
-//        }
-//
-//        if ( artifacts.get( fileName ).containsKey( locationName )) {
-//            throw new RuntimeException( String.format(
-//                "Adding artifacts mapping '%s/%s/%s' - artifacts Map already contains mapping of location '%s': %s",
-//                fileName, locationName, locationUrl, locationName, artifacts ));
-//        }
-//
-//        artifacts.get( fileName ).put( locationName, locationUrl );
-//    }
-    
     public List<Changeset> getChangeSet() {
 		return changeSet;
 	}
@@ -191,6 +164,25 @@ public class BuildState {
 		this.changeSet = changeSet;
 	}
 
+	/**
+	 * {@code true} if entries or affected files were left out of the change set.
+	 */
+	public Boolean getChangeSetTruncated() {
+		return changeSetTruncated;
+	}
+
+	public void setChangeSetTruncated(Boolean changeSetTruncated) {
+		this.changeSetTruncated = changeSetTruncated;
+	}
+
+	public ChangesetSummary getChangeSetSummary() {
+		return changeSetSummary;
+	}
+
+	public void setChangeSetSummary(ChangesetSummary changeSetSummary) {
+		this.changeSetSummary = changeSetSummary;
+	}
+
 	public List<String> getCauses() {
 		return causes;
 	}
@@ -238,4 +230,124 @@ public class BuildState {
 	public void setBackToNormalTime(String backToNormalTime) {
 		this.backToNormalTime = backToNormalTime;
 	}
+
+	/**
+	 * Name of the stage for stage phases.
+	 */
+	public String getStage() {
+		return stage;
+	}
+
+	public void setStage(String stage) {
+		this.stage = stage;
+	}
+
+	/**
+	 * Milliseconds since the build started, only sent with progress heartbeats.
+	 */
+	public Long getElapsedTime() {
+		return elapsedTime;
+	}
+
+	public void setElapsedTime(Long elapsedTime) {
+		this.elapsedTime = elapsedTime;
+	}
+
+	public Long getEstimatedDuration() {
+		return estimatedDuration;
+	}
+
+	public void setEstimatedDuration(Long estimatedDuration) {
+		this.estimatedDuration = estimatedDuration;
+	}
+
+	public Long getQueueId() {
+		return queueId;
+	}
+
+	public void setQueueId(Long queueId) {
+		this.queueId = queueId;
+	}
+
+	public Long getInQueueSince() {
+		return inQueueSince;
+	}
+
+	public void setInQueueSince(Long inQueueSince) {
+		this.inQueueSince = inQueueSince;
+	}
+
+	/**
+	 * Milliseconds the build waited in the queue before it got an executor.
+	 */
+	public Long getQueueWaitTime() {
+		return queueWaitTime;
+	}
+
+	public void setQueueWaitTime(Long queueWaitTime) {
+		this.queueWaitTime = queueWaitTime;
+	}
+
+	/**
+	 * Why the item is waiting in the queue.
+	 */
+	public String getQueueReason() {
+		return queueReason;
+	}
+
+	public void setQueueReason(String queueReason) {
+		this.queueReason = queueReason;
+	}
+
+	/**
+	 * Whether the item left the queue because it was cancelled.
+	 */
+	public Boolean getCancelled() {
+		return cancelled;
+	}
+
+	public void setCancelled(Boolean cancelled) {
+		this.cancelled = cancelled;
+	}
+
+	/**
+	 * Name of the node the build runs on.
+	 */
+	public String getNode() {
+		return node;
+	}
+
+	public void setNode(String node) {
+		this.node = node;
+	}
+
+	/**
+	 * Archived artifacts selected by the webhook, see {@link #artifacts}.
+	 */
+	public Map<String, Map<String, String>> getArtifacts() {
+		return artifacts;
+	}
+
+	public void setArtifacts(Map<String, Map<String, String>> artifacts) {
+		this.artifacts = artifacts;
+	}
+
+	/**
+	 * {@code true} if matching artifacts were left out.
+	 */
+	public Boolean getArtifactsTruncated() {
+		return artifactsTruncated;
+	}
+
+	public void setArtifactsTruncated(Boolean artifactsTruncated) {
+		this.artifactsTruncated = artifactsTruncated;
+	}
+
+	public TestSummary getTestSummary() {
+		return testSummary;
+	}
+
+	public void setTestSummary(TestSummary testSummary) {
+		this.testSummary = testSummary;
+	}
 }
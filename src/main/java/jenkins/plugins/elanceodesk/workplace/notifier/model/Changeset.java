@@ -15,42 +15,133 @@ package jenkins.plugins.elanceodesk.workplace.notifier.model;
 
 import hudson.scm.ChangeLogSet.AffectedFile;
 
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
+import com.google.gson.stream.JsonWriter;
+
 /**
  * Changes that causes the start of a new build. List of affected files and user
  * that caused those changes.
- *
+ * <p>
+ * Immutable. Affected files are kept as flat arrays of paths and shared
+ * edit type names, and the author is shared between changesets. A path the
+ * entry lists more than once is kept once, with its last edit type, since
+ * paths are the keys of {@code affected_files}.
  */
-public class Changeset {
+public final class Changeset {
 
-	String authorDisplayName;
-	
-	String authorId;
-	
-	Map<String, String> affectedFiles;
+	private final Author author;
+
+	private final String[] paths;
+
+	private final String[] editTypes;
+
+	private final int omittedFiles;
 
 	public Changeset(String authorDisplayName, String authorId, Collection<? extends AffectedFile> affectedFiles) {
-		this.authorDisplayName = authorDisplayName;
-		this.authorId = authorId;
-		this.affectedFiles = new HashMap<String, String>();
+		this(authorDisplayName, authorId, affectedFiles, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @param maxFiles
+	 *            number of affected files to keep, the rest is only counted
+	 */
+	public Changeset(String authorDisplayName, String authorId, Collection<? extends AffectedFile> affectedFiles,
+			int maxFiles) {
+		this.author = Author.of(authorDisplayName, authorId);
+		String[] paths = new String[Math.min(affectedFiles.size(), maxFiles)];
+		String[] editTypes = new String[paths.length];
+		Map<String, Integer> indexes = new HashMap<String, Integer>();
+		int count = 0;
+		int omitted = 0;
 		for(AffectedFile temp : affectedFiles) {
-			this.affectedFiles.put(temp.getPath(), temp.getEditType().getName());
+			String path = temp.getPath();
+			Integer index = indexes.get(path);
+			if (index != null) {
+				editTypes[index] = FileEditType.nameOf(temp.getEditType());
+			} else if (count < paths.length) {
+				indexes.put(path, count);
+				paths[count] = path;
+				editTypes[count] = FileEditType.nameOf(temp.getEditType());
+				count++;
+			} else {
+				omitted++;
+			}
 		}
+		this.paths = count == paths.length ? paths : Arrays.copyOf(paths, count);
+		this.editTypes = count == editTypes.length ? editTypes : Arrays.copyOf(editTypes, count);
+		this.omittedFiles = omitted;
 	}
 	
 	public String getAuthorDisplayName() {
-		return authorDisplayName;
+		return author.getDisplayName();
 	}
 	
 	public String getAuthorId() {
-		return authorId;
+		return author.getId();
 	}
 
+	public int getAffectedFileCount() {
+		return paths.length;
+	}
+
+	public String getPath(int index) {
+		return paths[index];
+	}
+
+	/**
+	 * Name of the edit type, see {@link FileEditType#nameOf}.
+	 */
+	public String getEditType(int index) {
+		return editTypes[index];
+	}
+
+	/**
+	 * Number of affected files left out because of the size limits.
+	 */
+	public int getOmittedFiles() {
+		return omittedFiles;
+	}
+
+	/**
+	 * Affected files as path to edit type name. Builds a new map on each call.
+	 */
 	public Map<String, String> getAffectedFiles() {
-		return this.affectedFiles;
+		Map<String, String> affectedFiles = new LinkedHashMap<String, String>();
+		for (int i = 0; i < paths.length; i++) {
+			affectedFiles.put(paths[i], editTypes[i]);
+		}
+		return affectedFiles;
 	}
 
-}
\ No newline at end of file
+	/**
+	 * Writes changesets without reflection, in the same shape the field
+	 * based serialization used.
+	 */
+	public static final ModelAdapters.ModelWriter<Changeset> WRITER = new ModelAdapters.ModelWriter<Changeset>() {
+		@Override
+		public void write(JsonWriter out, Changeset value) throws IOException {
+			if (value == null) {
+				out.nullValue();
+				return;
+			}
+			out.beginObject();
+			out.name("author_display_name").value(value.author.getDisplayName());
+			out.name("author_id").value(value.author.getId());
+			out.name("affected_files").beginObject();
+			for (int i = 0; i < value.paths.length; i++) {
+				out.name(String.valueOf(value.paths[i])).value(value.editTypes[i]);
+			}
+			out.endObject();
+			if (value.omittedFiles > 0) {
+				out.name("omitted_files").value(value.omittedFiles);
+			}
+			out.endObject();
+		}
+	};
+}
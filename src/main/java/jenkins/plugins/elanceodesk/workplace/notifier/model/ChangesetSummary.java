@@ -0,0 +1,61 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier.model;
+
+import java.util.Map;
+
+/**
+ * Counts describing all changes of a build, sent when the change set is
+ * truncated or summarized.
+ */
+public final class ChangesetSummary {
+
+	private final int entries;
+
+	private final int affectedFiles;
+
+	private final Map<String, Integer> editTypes;
+
+	private final Map<String, Integer> topPaths;
+
+	/**
+	 * @param editTypes
+	 *            number of affected files per edit type name
+	 * @param topPaths
+	 *            directories with the most affected files, most affected first
+	 */
+	public ChangesetSummary(int entries, int affectedFiles, Map<String, Integer> editTypes,
+			Map<String, Integer> topPaths) {
+		this.entries = entries;
+		this.affectedFiles = affectedFiles;
+		this.editTypes = editTypes;
+		this.topPaths = topPaths;
+	}
+
+	public int getEntries() {
+		return entries;
+	}
+
+	public int getAffectedFiles() {
+		return affectedFiles;
+	}
+
+	public Map<String, Integer> getEditTypes() {
+		return editTypes;
+	}
+
+	public Map<String, Integer> getTopPaths() {
+		return topPaths;
+	}
+}
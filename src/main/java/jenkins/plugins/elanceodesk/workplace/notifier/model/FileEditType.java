@@ -0,0 +1,55 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier.model;
+
+import hudson.scm.EditType;
+
+/**
+ * How a change affected a file. The common types share the names of these
+ * constants instead of keeping per file copies of {@link EditType#getName()}.
+ */
+public enum FileEditType {
+	ADD("add"), EDIT("edit"), DELETE("delete");
+
+	private final String name;
+
+	private FileEditType(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Name used in payloads, same as {@link EditType#getName()}.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Payload name of an SCM edit type. Types other than add, edit and delete
+	 * keep the name the SCM gave them, a missing type counts as an edit.
+	 */
+	public static String nameOf(EditType editType) {
+		String name = editType == null ? null : editType.getName();
+		if (name == null || EDIT.name.equals(name)) {
+			return EDIT.name;
+		}
+		if (ADD.name.equals(name)) {
+			return ADD.name;
+		}
+		if (DELETE.name.equals(name)) {
+			return DELETE.name;
+		}
+		return name;
+	}
+}
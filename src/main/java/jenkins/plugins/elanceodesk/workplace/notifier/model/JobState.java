@@ -24,6 +24,11 @@ public class JobState {
 
     private BuildState build;
 
+    /**
+     * Same for every retry of this notification, so receivers can drop duplicates.
+     */
+    private String eventId;
+
     public String getName() {
         return name;
     }
@@ -47,4 +52,12 @@ public class JobState {
     public void setBuild(BuildState build) {
         this.build = build;
     }
+
+    public String getEventId() {
+        return eventId;
+    }
+
+    public void setEventId(String eventId) {
+        this.eventId = eventId;
+    }
 }
@@ -0,0 +1,259 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier.model;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Hand-written writers for the payload model.
+ * <p>
+ * They write the same fields, in the same order and under the same names as
+ * field based serialization with
+ * {@link com.google.gson.FieldNamingPolicy#LOWER_CASE_WITH_UNDERSCORES}, but
+ * without reflection or converting field names on every call. Null values
+ * are left to the {@link JsonWriter}, which drops them unless nulls are
+ * serialized. Keep the writers in sync when fields are added to the model.
+ * <p>
+ * The model is only ever written. Payloads are streamed through
+ * {@link ModelWriter#write(JsonWriter, Object)}, and Gson gets the writers as
+ * type adapters that write straight into its own {@link JsonWriter}, for
+ * values it serializes itself.
+ */
+public final class ModelAdapters {
+
+	private ModelAdapters() {
+	}
+
+	public static GsonBuilder register(GsonBuilder builder) {
+		return builder.registerTypeAdapter(JobState.class, JOB_STATE)
+				.registerTypeAdapter(BuildState.class, BUILD_STATE)
+				.registerTypeAdapter(ScmState.class, SCM_STATE)
+				.registerTypeAdapter(ChangesetSummary.class, CHANGESET_SUMMARY)
+				.registerTypeAdapter(TestSummary.class, TEST_SUMMARY)
+				.registerTypeAdapter(Changeset.class, Changeset.WRITER);
+	}
+
+	public static final ModelWriter<JobState> JOB_STATE = new ModelWriter<JobState>() {
+		@Override
+		public void write(JsonWriter out, JobState value) throws IOException {
+			if (value == null) {
+				out.nullValue();
+				return;
+			}
+			out.beginObject();
+			out.name("name").value(value.getName());
+			out.name("url").value(value.getUrl());
+			out.name("build");
+			BUILD_STATE.write(out, value.getBuild());
+			out.name("event_id").value(value.getEventId());
+			out.endObject();
+		}
+	};
+
+	public static final ModelWriter<BuildState> BUILD_STATE = new ModelWriter<BuildState>() {
+		@Override
+		public void write(JsonWriter out, BuildState value) throws IOException {
+			if (value == null) {
+				out.nullValue();
+				return;
+			}
+			out.beginObject();
+			out.name("full_url").value(value.getFullUrl());
+			out.name("number").value(value.getNumber());
+			out.name("phase").value(value.getPhase() == null ? null : value.getPhase().name());
+			out.name("status").value(value.getStatus());
+			out.name("url").value(value.getUrl());
+			out.name("display_name").value(value.getDisplayName());
+			out.name("scm");
+			SCM_STATE.write(out, value.getScm());
+			out.name("parameters");
+			writeMap(out, value.getParameters());
+			out.name("change_set");
+			writeChangesets(out, value.getChangeSet());
+			out.name("change_set_truncated");
+			writeBoolean(out, value.getChangeSetTruncated());
+			out.name("change_set_summary");
+			CHANGESET_SUMMARY.write(out, value.getChangeSetSummary());
+			out.name("causes");
+			writeStrings(out, value.getCauses());
+			out.name("duration_string").value(value.getDurationString());
+			out.name("completion_time").value(value.getCompletionTime());
+			out.name("failing_since_build");
+			write(out, value.getFailingSinceBuild());
+			out.name("failing_since_time").value(value.getFailingSinceTime());
+			out.name("back_to_normal_time").value(value.getBackToNormalTime());
+			out.name("stage").value(value.getStage());
+			out.name("elapsed_time").value(value.getElapsedTime());
+			out.name("estimated_duration").value(value.getEstimatedDuration());
+			out.name("queue_id").value(value.getQueueId());
+			out.name("in_queue_since").value(value.getInQueueSince());
+			out.name("queue_wait_time").value(value.getQueueWaitTime());
+			out.name("queue_reason").value(value.getQueueReason());
+			out.name("cancelled");
+			writeBoolean(out, value.getCancelled());
+			out.name("node").value(value.getNode());
+			out.name("artifacts");
+			writeArtifacts(out, value.getArtifacts());
+			out.name("artifacts_truncated");
+			writeBoolean(out, value.getArtifactsTruncated());
+			out.name("test_summary");
+			TEST_SUMMARY.write(out, value.getTestSummary());
+			out.endObject();
+		}
+	};
+
+	public static final ModelWriter<ScmState> SCM_STATE = new ModelWriter<ScmState>() {
+		@Override
+		public void write(JsonWriter out, ScmState value) throws IOException {
+			if (value == null) {
+				out.nullValue();
+				return;
+			}
+			out.beginObject();
+			out.name("url").value(value.getUrl());
+			out.name("branch").value(value.getBranch());
+			out.name("commit").value(value.getCommit());
+			out.endObject();
+		}
+	};
+
+	public static final ModelWriter<ChangesetSummary> CHANGESET_SUMMARY = new ModelWriter<ChangesetSummary>() {
+		@Override
+		public void write(JsonWriter out, ChangesetSummary value) throws IOException {
+			if (value == null) {
+				out.nullValue();
+				return;
+			}
+			out.beginObject();
+			out.name("entries").value(value.getEntries());
+			out.name("affected_files").value(value.getAffectedFiles());
+			out.name("edit_types");
+			writeCounts(out, value.getEditTypes());
+			out.name("top_paths");
+			writeCounts(out, value.getTopPaths());
+			out.endObject();
+		}
+	};
+
+	public static final ModelWriter<TestSummary> TEST_SUMMARY = new ModelWriter<TestSummary>() {
+		@Override
+		public void write(JsonWriter out, TestSummary value) throws IOException {
+			if (value == null) {
+				out.nullValue();
+				return;
+			}
+			out.beginObject();
+			out.name("total").value(value.getTotal());
+			out.name("passed").value(value.getPassed());
+			out.name("failed").value(value.getFailed());
+			out.name("skipped").value(value.getSkipped());
+			out.name("newly_failing");
+			writeStrings(out, value.getNewlyFailing());
+			out.name("newly_failing_truncated");
+			writeBoolean(out, value.getNewlyFailingTruncated());
+			out.endObject();
+		}
+	};
+
+	private static void writeCounts(JsonWriter out, Map<String, Integer> counts) throws IOException {
+		if (counts == null) {
+			out.nullValue();
+			return;
+		}
+		out.beginObject();
+		for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+			out.name(String.valueOf(entry.getKey())).value(entry.getValue());
+		}
+		out.endObject();
+	}
+
+	private static void writeMap(JsonWriter out, Map<String, String> map) throws IOException {
+		if (map == null) {
+			out.nullValue();
+			return;
+		}
+		out.beginObject();
+		for (Map.Entry<String, String> entry : map.entrySet()) {
+			out.name(String.valueOf(entry.getKey())).value(entry.getValue());
+		}
+		out.endObject();
+	}
+
+	private static void writeArtifacts(JsonWriter out, Map<String, Map<String, String>> artifacts)
+			throws IOException {
+		if (artifacts == null) {
+			out.nullValue();
+			return;
+		}
+		out.beginObject();
+		for (Map.Entry<String, Map<String, String>> entry : artifacts.entrySet()) {
+			out.name(String.valueOf(entry.getKey()));
+			writeMap(out, entry.getValue());
+		}
+		out.endObject();
+	}
+
+	private static void writeStrings(JsonWriter out, List<String> values) throws IOException {
+		if (values == null) {
+			out.nullValue();
+			return;
+		}
+		out.beginArray();
+		for (String value : values) {
+			out.value(value);
+		}
+		out.endArray();
+	}
+
+	private static void writeChangesets(JsonWriter out, List<Changeset> changesets) throws IOException {
+		if (changesets == null) {
+			out.nullValue();
+			return;
+		}
+		out.beginArray();
+		for (Changeset changeset : changesets) {
+			Changeset.WRITER.write(out, changeset);
+		}
+		out.endArray();
+	}
+
+	private static void writeBoolean(JsonWriter out, Boolean value) throws IOException {
+		if (value == null) {
+			out.nullValue();
+		} else {
+			out.value(value.booleanValue());
+		}
+	}
+
+	/**
+	 * Streams one model type to a {@link JsonWriter}.
+	 */
+	public abstract static class ModelWriter<T> extends TypeAdapter<T> {
+
+		/**
+		 * The model is only ever written.
+		 */
+		@Override
+		public T read(JsonReader in) {
+			throw new UnsupportedOperationException("The payload model is not read");
+		}
+	}
+}
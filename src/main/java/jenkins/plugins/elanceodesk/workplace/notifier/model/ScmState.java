@@ -14,22 +14,27 @@
 package jenkins.plugins.elanceodesk.workplace.notifier.model;
 
 
-public class ScmState
+/**
+ * Immutable, so one instance can be shared by all payloads of a build.
+ */
+public final class ScmState
 {
-    private String url;
+    private final String url;
 
-    private String branch;
+    private final String branch;
 
-    private String commit;
+    private final String commit;
 
-    public String getUrl ()
+    public ScmState ( String url, String branch, String commit )
     {
-        return url;
+        this.url = url;
+        this.branch = branch;
+        this.commit = commit;
     }
 
-    public void setUrl ( String url )
+    public String getUrl ()
     {
-        this.url = url;
+        return url;
     }
 
     public String getBranch ()
@@ -37,18 +42,8 @@ public class ScmState
         return branch;
     }
 
-    public void setBranch ( String branch )
-    {
-        this.branch = branch;
-    }
-
     public String getCommit ()
     {
         return commit;
     }
-
-    public void setCommit ( String commit )
-    {
-        this.commit = commit;
-    }
 }
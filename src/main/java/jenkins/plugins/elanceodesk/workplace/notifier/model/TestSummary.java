@@ -0,0 +1,73 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier.model;
+
+import java.util.List;
+
+/**
+ * Test result counts of a build, optionally with the names of tests that
+ * started failing in it.
+ */
+public final class TestSummary {
+
+	private final int total;
+
+	private final int failed;
+
+	private final int skipped;
+
+	private final List<String> newlyFailing;
+
+	private final Boolean newlyFailingTruncated;
+
+	/**
+	 * @param newlyFailing
+	 *            names of tests failing first in this build, {@code null} if
+	 *            not requested
+	 */
+	public TestSummary(int total, int failed, int skipped, List<String> newlyFailing, Boolean newlyFailingTruncated) {
+		this.total = total;
+		this.failed = failed;
+		this.skipped = skipped;
+		this.newlyFailing = newlyFailing;
+		this.newlyFailingTruncated = newlyFailingTruncated;
+	}
+
+	public int getTotal() {
+		return total;
+	}
+
+	public int getPassed() {
+		return total - failed - skipped;
+	}
+
+	public int getFailed() {
+		return failed;
+	}
+
+	public int getSkipped() {
+		return skipped;
+	}
+
+	public List<String> getNewlyFailing() {
+		return newlyFailing;
+	}
+
+	/**
+	 * {@code true} if names of newly failing tests were left out.
+	 */
+	public Boolean getNewlyFailingTruncated() {
+		return newlyFailingTruncated;
+	}
+}
@@ -0,0 +1,98 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import hudson.model.Run;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.powermock.reflect.Whitebox;
+
+/**
+ * Testing ArtifactIndex which lists the archived artifacts of a build for
+ * each artifact filter.
+ *
+ */
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class ArtifactIndexTest {
+
+	private static final String BUILD_URL = "http://localhost:8080/job/a/1/";
+
+	@Test
+	public void testGlobFilters() {
+		Run run = run("target/a.jar", "target/a.hpi", "lib/b.jar", "docs/index.html");
+		ArtifactIndex index = new ArtifactIndex(run, BUILD_URL);
+
+		ArtifactIndex.Selection jars = index.select("**/*.jar");
+		Assert.assertEquals("[target/a.jar, lib/b.jar]", jars.getArtifacts().keySet().toString());
+		Assert.assertEquals(BUILD_URL + "artifact/target/a.jar", jars.getArtifacts().get("target/a.jar").get("archive"));
+		Assert.assertFalse(jars.isTruncated());
+
+		ArtifactIndex.Selection several = index.select("target/*.hpi, docs/**");
+		Assert.assertEquals("[target/a.hpi, docs/index.html]", several.getArtifacts().keySet().toString());
+
+		Assert.assertTrue(index.select("*.jar").getArtifacts().isEmpty());
+	}
+
+	@Test
+	public void testMaxArtifacts() {
+		String[] paths = new String[ArtifactIndex.MAX_ARTIFACTS + 5];
+		for (int i = 0; i < paths.length; i++) {
+			paths[i] = "target/file" + i + ".jar";
+		}
+		ArtifactIndex index = new ArtifactIndex(run(paths), BUILD_URL);
+
+		ArtifactIndex.Selection all = index.select("**/*.jar");
+		Assert.assertEquals(ArtifactIndex.MAX_ARTIFACTS, all.getArtifacts().size());
+		Assert.assertTrue(all.isTruncated());
+
+		ArtifactIndex.Selection one = index.select("target/file0.jar");
+		Assert.assertEquals(1, one.getArtifacts().size());
+		Assert.assertFalse(one.isTruncated());
+	}
+
+	@Test
+	public void testArtifactsAreScannedOnce() {
+		Run run = run("target/a.jar", "target/a.hpi");
+		ArtifactIndex index = new ArtifactIndex(run, BUILD_URL);
+		index.select("**/*.jar");
+		index.select("**/*.hpi");
+		index.select("**/*.jar");
+		Mockito.verify(run, Mockito.times(1)).getArtifactsUpTo(Mockito.anyInt());
+	}
+
+	@Test
+	public void testNoScanWithoutFilter() {
+		Run run = run("target/a.jar");
+		new ArtifactIndex(run, BUILD_URL);
+		Mockito.verify(run, Mockito.never()).getArtifactsUpTo(Mockito.anyInt());
+	}
+
+	private static Run run(String... paths) {
+		List<Run.Artifact> artifacts = new ArrayList<Run.Artifact>();
+		for (String path : paths) {
+			Run.Artifact artifact = Mockito.mock(Run.Artifact.class);
+			Whitebox.setInternalState(artifact, "relativePath", path);
+			Mockito.when(artifact.getHref()).thenReturn(path);
+			artifacts.add(artifact);
+		}
+		Run run = Mockito.mock(Run.class);
+		Mockito.when(run.getArtifactsUpTo(Mockito.anyInt())).thenReturn(artifacts);
+		return run;
+	}
+}
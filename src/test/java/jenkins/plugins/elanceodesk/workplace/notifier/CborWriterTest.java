@@ -0,0 +1,59 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import jenkins.plugins.elanceodesk.workplace.notifier.model.JobState;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Testing the CBOR payload format.
+ *
+ */
+public class CborWriterTest {
+
+	@Test
+	public void testScalars() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		CborWriter writer = new CborWriter(out);
+		writer.beginArray();
+		writer.value(0).value(23).value(24).value(1000).value(-1).value(true).value(false).nullValue();
+		writer.value(1.5d);
+		writer.endArray();
+		writer.close();
+		assertBytes("9f 00 17 1818 1903e8 20 f5 f4 f6 fb3ff8000000000000 ff", out.toByteArray());
+	}
+
+	@Test
+	public void testNullFieldsAreDropped() {
+		JobState jobState = new JobState();
+		jobState.setName("a");
+		Payload payload = PayloadFormat.CBOR.encode(jobState);
+		Assert.assertEquals("application/cbor", payload.getContentType());
+		// {_ "name": "a"}
+		assertBytes("bf 646e616d65 6161 ff", payload.getData());
+	}
+
+	private static void assertBytes(String expectedHex, byte[] actual) {
+		StringBuilder hex = new StringBuilder();
+		for (byte b : actual) {
+			hex.append(String.format("%02x", b & 0xff));
+		}
+		Assert.assertEquals(expectedHex.replace(" ", ""), hex.toString());
+	}
+}
@@ -0,0 +1,128 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import hudson.model.User;
+import hudson.scm.ChangeLogSet.AffectedFile;
+import hudson.scm.ChangeLogSet.Entry;
+import hudson.scm.EditType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import jenkins.plugins.elanceodesk.workplace.notifier.model.BuildState;
+import jenkins.plugins.elanceodesk.workplace.notifier.model.ChangesetSummary;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Testing the change set limits.
+ *
+ */
+@SuppressWarnings({ "unchecked", "rawtypes" })
+public class ChangesetCollectorTest {
+
+	@Test
+	public void testWithinLimits() {
+		ChangesetCollector collector = new ChangesetCollector(10, 10, 1024 * 1024, false, 10);
+		collector.add(entry("src/a.java", "src/b.java"));
+		BuildState buildState = new BuildState();
+		collector.populate(buildState);
+		Assert.assertEquals(1, buildState.getChangeSet().size());
+		Assert.assertEquals(0, buildState.getChangeSet().get(0).getOmittedFiles());
+		Assert.assertNull(buildState.getChangeSetTruncated());
+		Assert.assertNull(buildState.getChangeSetSummary());
+	}
+
+	@Test
+	public void testMaxEntriesAndFiles() {
+		ChangesetCollector collector = new ChangesetCollector(1, 2, 1024 * 1024, false, 10);
+		collector.add(entry("src/a.java", "src/b.java", "lib/c.jar"));
+		collector.add(entry("src/d.java"));
+		BuildState buildState = new BuildState();
+		collector.populate(buildState);
+		Assert.assertEquals(1, buildState.getChangeSet().size());
+		Assert.assertEquals(2, buildState.getChangeSet().get(0).getAffectedFileCount());
+		Assert.assertEquals(1, buildState.getChangeSet().get(0).getOmittedFiles());
+		Assert.assertEquals(Boolean.TRUE, buildState.getChangeSetTruncated());
+		ChangesetSummary summary = buildState.getChangeSetSummary();
+		Assert.assertEquals(2, summary.getEntries());
+		Assert.assertEquals(4, summary.getAffectedFiles());
+		Assert.assertEquals(Integer.valueOf(4), summary.getEditTypes().get("edit"));
+		Assert.assertEquals("[src, lib]", summary.getTopPaths().keySet().toString());
+	}
+
+	@Test
+	public void testMaxBytes() {
+		ChangesetCollector collector = new ChangesetCollector(100, 100, 200, false, 10);
+		for (int i = 0; i < 10; i++) {
+			collector.add(entry("src/file" + i + ".java"));
+		}
+		BuildState buildState = new BuildState();
+		collector.populate(buildState);
+		Assert.assertTrue(buildState.getChangeSet().size() < 10);
+		Assert.assertEquals(Boolean.TRUE, buildState.getChangeSetTruncated());
+		Assert.assertEquals(10, buildState.getChangeSetSummary().getEntries());
+	}
+
+	@Test
+	public void testFilesAreKeptUpToTheFirstThatDoesNotFit() {
+		// the entry and "a" fit, the long path does not, "b" would
+		ChangesetCollector collector = new ChangesetCollector(100, 100, 130, false, 10);
+		StringBuilder longPath = new StringBuilder();
+		for (int i = 0; i < 10; i++) {
+			longPath.append("directory/");
+		}
+		collector.add(entry("a", longPath.toString(), "b"));
+		BuildState buildState = new BuildState();
+		collector.populate(buildState);
+		Assert.assertEquals(1, buildState.getChangeSet().size());
+		Assert.assertEquals(1, buildState.getChangeSet().get(0).getAffectedFileCount());
+		Assert.assertEquals("a", buildState.getChangeSet().get(0).getPath(0));
+		Assert.assertEquals(2, buildState.getChangeSet().get(0).getOmittedFiles());
+		Assert.assertEquals(Boolean.TRUE, buildState.getChangeSetTruncated());
+	}
+
+	@Test
+	public void testSummaryMode() {
+		ChangesetCollector collector = new ChangesetCollector(100, 100, 1024 * 1024, true, 1);
+		collector.add(entry("src/a.java", "doc/b.txt", "src/c.java"));
+		BuildState buildState = new BuildState();
+		collector.populate(buildState);
+		Assert.assertTrue(buildState.getChangeSet().isEmpty());
+		Assert.assertEquals(Boolean.TRUE, buildState.getChangeSetTruncated());
+		Assert.assertEquals(1, buildState.getChangeSetSummary().getTopPaths().size());
+		Assert.assertEquals(Integer.valueOf(2), buildState.getChangeSetSummary().getTopPaths().get("src"));
+	}
+
+	private static Entry entry(String... paths) {
+		User author = mock(User.class);
+		when(author.getId()).thenReturn("jdoe");
+		when(author.getDisplayName()).thenReturn("John Doe");
+		List<AffectedFile> files = new ArrayList<AffectedFile>();
+		for (String path : paths) {
+			AffectedFile file = mock(AffectedFile.class);
+			when(file.getPath()).thenReturn(path);
+			when(file.getEditType()).thenReturn(EditType.EDIT);
+			files.add(file);
+		}
+		Entry entry = mock(Entry.class);
+		when(entry.getAuthor()).thenReturn(author);
+		when((List) entry.getAffectedFiles()).thenReturn(files);
+		return entry;
+	}
+}
@@ -0,0 +1,87 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Testing the adaptive per endpoint concurrency limit.
+ *
+ */
+public class ConcurrencyLimitTest {
+
+	private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	@Test
+	public void testGrowsWhileLatencyIsFlat() {
+		ConcurrencyLimit limit = new ConcurrencyLimit(2, 1, 10);
+		long now = System.nanoTime();
+		for (int round = 0; round < 100; round++) {
+			// the limit only grows while it is used
+			int permits = limit.getCurrent();
+			for (int i = 0; i < permits; i++) {
+				Assert.assertTrue(limit.tryAcquire());
+			}
+			Assert.assertFalse(limit.tryAcquire());
+			for (int i = 0; i < permits; i++) {
+				limit.sample(now, now + 10 * MS, false);
+				Assert.assertNull(limit.release());
+			}
+			now += 10 * MS;
+		}
+		Assert.assertEquals(10, limit.getCurrent());
+		Assert.assertEquals(10d, limit.getBaseline(), 0.001);
+	}
+
+	@Test
+	public void testCutsOncePerOverload() {
+		ConcurrencyLimit limit = new ConcurrencyLimit(10, 1, 10);
+		long now = System.nanoTime();
+		limit.sample(now, now + 10 * MS, false);
+		// slow responses to requests sent before the cut count once
+		long start = now + 20 * MS;
+		for (int i = 0; i < 5; i++) {
+			limit.sample(start, start + 100 * MS + i, false);
+		}
+		Assert.assertEquals(7, limit.getCurrent());
+
+		long later = start + 200 * MS;
+		limit.sample(later, later + 5 * MS, true);
+		Assert.assertEquals(4, limit.getCurrent());
+	}
+
+	@Test
+	public void testQueuesBeyondLimit() {
+		ConcurrencyLimit limit = new ConcurrencyLimit(1, 1, 1);
+		Runnable first = new Noop();
+		Runnable second = new Noop();
+		Assert.assertTrue(limit.acquireOrQueue(first));
+		Assert.assertFalse(limit.acquireOrQueue(second));
+		Assert.assertFalse(limit.tryAcquire());
+		Assert.assertEquals(1, limit.getWaiting());
+
+		Assert.assertSame(second, limit.release());
+		Assert.assertEquals(1, limit.getInFlight());
+		Assert.assertNull(limit.release());
+		Assert.assertEquals(0, limit.getInFlight());
+	}
+
+	private static final class Noop implements Runnable {
+		public void run() {
+		}
+	}
+}
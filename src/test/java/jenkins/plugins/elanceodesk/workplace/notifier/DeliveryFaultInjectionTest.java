@@ -0,0 +1,510 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.ref.WeakReference;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Testing delivery against an endpoint that misbehaves: slow responses,
+ * connection resets, truncated responses, 429 with Retry-After and storms of
+ * 5xx responses.
+ * <p>
+ * The stub endpoint is a plain socket server on a random port, so faults
+ * below HTTP can be injected. Each scenario checks that workers always
+ * finish, that a delivery counts as delivered exactly when the endpoint
+ * acknowledged it, and, where it applies, the number of busy notifier
+ * threads, attempt counts and that no body is retained once deliveries
+ * finished. Timings are only checked against bounds many times larger than
+ * expected, so that a loaded machine does not fail them.
+ */
+public class DeliveryFaultInjectionTest {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final PrintStream LOGGER = new PrintStream(new ByteArrayOutputStream() {
+		@Override
+		public synchronized void write(byte[] b, int off, int len) {
+			// discarded
+		}
+
+		@Override
+		public synchronized void write(int b) {
+			// discarded
+		}
+	});
+
+	private StubEndpoint endpoint;
+
+	@After
+	public void stopEndpoint() throws IOException {
+		if (endpoint != null) {
+			endpoint.close();
+		}
+	}
+
+	@Test(timeout = 60000)
+	public void testSlowEndpointDoesNotPileUpThreads() throws Exception {
+		endpoint = new StubEndpoint(Fault.SLOW);
+		endpoint.delay = 200;
+		int deliveries = 60;
+		// deliveries of earlier tests may still be finishing
+		while (countBusyNotifierThreads() > 0) {
+			Thread.sleep(20);
+		}
+
+		deliver(webhook(endpoint.url("/slow"), 5000), deliveries, 1024);
+		int peakThreads = 0;
+		while (!isIdle(endpoint.url("/slow"))) {
+			peakThreads = Math.max(peakThreads, countBusyNotifierThreads());
+			Thread.sleep(20);
+		}
+
+		Assert.assertEquals(deliveries, endpoint.acknowledged.size());
+		Assert.assertTrue("peak concurrency " + endpoint.maxConcurrent,
+				endpoint.maxConcurrent.get() <= ConcurrencyLimit.MAX_LIMIT);
+		Assert.assertTrue("busy notifier threads " + peakThreads, peakThreads <= ConcurrencyLimit.MAX_LIMIT);
+		assertIdle(endpoint.url("/slow"));
+	}
+
+	@Test(timeout = 60000)
+	public void testTimeoutBoundsTailLatency() throws Exception {
+		endpoint = new StubEndpoint(Fault.SLOW);
+		endpoint.delay = 3000;
+		int timeout = 300;
+		int retries = 2;
+		List<HttpWorker> workers = new ArrayList<HttpWorker>();
+		for (int i = 0; i < 10; i++) {
+			workers.add(new HttpWorker(endpoint.url("/timeout"), "{}", timeout, retries, LOGGER));
+		}
+		long elapsed = runAll(workers);
+
+		for (HttpWorker worker : workers) {
+			Assert.assertFalse(worker.isDelivered());
+		}
+		// every attempt was cut short, waiting for the answers would take
+		// retries * delay
+		Assert.assertEquals(workers.size() * retries, endpoint.requests.get());
+		Assert.assertEquals(0, endpoint.acknowledged.size());
+		Assert.assertTrue("took " + elapsed + " ms", elapsed < retries * endpoint.delay);
+		DeliveryStats.Endpoint stats = DeliveryStats.forUrl(endpoint.url("/timeout"));
+		Assert.assertTrue("p99 " + stats.getLatency(99), stats.getLatency(99) < endpoint.delay);
+		Assert.assertEquals(0, stats.getInFlight());
+	}
+
+	@Test(timeout = 60000)
+	public void testConnectionResetsAreRetried() throws Exception {
+		endpoint = new StubEndpoint(Fault.RESET);
+		int retries = 3;
+		List<HttpWorker> workers = new ArrayList<HttpWorker>();
+		for (int i = 0; i < 10; i++) {
+			workers.add(new HttpWorker(endpoint.url("/reset"), "{}", 2000, retries, LOGGER));
+		}
+		runAll(workers);
+
+		for (HttpWorker worker : workers) {
+			Assert.assertFalse(worker.isDelivered());
+			Assert.assertFalse(worker.isTerminal());
+		}
+		Assert.assertTrue(endpoint.requests.get() >= workers.size() * retries);
+		Assert.assertEquals(0, endpoint.acknowledged.size());
+	}
+
+	@Test(timeout = 60000)
+	public void testTruncatedResponsesDoNotLeakConnections() throws Exception {
+		endpoint = new StubEndpoint(Fault.PARTIAL);
+		// more than the connections kept per host, a leaked connection would
+		// make later attempts wait for the pool and time out
+		int deliveries = 50;
+		for (int i = 0; i < deliveries; i++) {
+			HttpWorker worker = new HttpWorker(endpoint.url("/partial"), "{}", 1000, 1, LOGGER);
+			worker.run();
+			Assert.assertTrue("delivery " + i, worker.isDelivered());
+		}
+		Assert.assertEquals(deliveries, endpoint.acknowledged.size());
+	}
+
+	@Test(timeout = 60000)
+	public void testRetryAfterIsHonoured() throws Exception {
+		endpoint = new StubEndpoint(Fault.RATE_LIMITED);
+		endpoint.failFirst = 1;
+		HttpWorker worker = new HttpWorker(endpoint.url("/limited"), "{}", 5000, 2, LOGGER);
+		worker.run();
+
+		Assert.assertTrue(worker.isDelivered());
+		Assert.assertEquals(1000, worker.getRetryDelay());
+		Assert.assertEquals(2, endpoint.times.size());
+		long gap = TimeUnit.NANOSECONDS.toMillis(endpoint.times.get(1) - endpoint.times.get(0));
+		// a lower bound, a loaded machine only makes the gap longer
+		Assert.assertTrue("retried after " + gap + " ms", gap >= 500);
+	}
+
+	@Test(timeout = 60000)
+	public void testServerErrorStorm() throws Exception {
+		endpoint = new StubEndpoint(Fault.STORM);
+		endpoint.failFirst = 40;
+		List<HttpWorker> workers = new ArrayList<HttpWorker>();
+		for (int i = 0; i < 20; i++) {
+			workers.add(new HttpWorker(endpoint.url("/storm"), "{}", 2000, 3, LOGGER));
+		}
+		runAll(workers);
+
+		int delivered = 0;
+		for (HttpWorker worker : workers) {
+			Assert.assertFalse(worker.isTerminal());
+			if (worker.isDelivered()) {
+				delivered++;
+			}
+		}
+		// delivered exactly when acknowledged, and acknowledged once
+		Assert.assertEquals(endpoint.acknowledged.size(), delivered);
+		Assert.assertEquals(endpoint.acknowledgements.get(), delivered);
+		Assert.assertEquals(40 + delivered, endpoint.requests.get());
+		// the failures cut the endpoint's concurrency limit
+		ConcurrencyLimit limit = DeliveryStats.forUrl(endpoint.url("/storm")).getLimit();
+		Assert.assertTrue("limit " + limit.getCurrent(), limit.getCurrent() < ConcurrencyLimit.INITIAL_LIMIT);
+	}
+
+	@Test(timeout = 60000)
+	public void testNothingRetainedAfterStorm() throws Exception {
+		endpoint = new StubEndpoint(Fault.STORM);
+		endpoint.failFirst = 100;
+		int deliveries = 200;
+		int size = 128 * 1024;
+
+		List<WeakReference<byte[]>> bodies = deliver(webhook(endpoint.url("/retained"), 2000), deliveries, size);
+		while (!isIdle(endpoint.url("/retained"))) {
+			Thread.sleep(20);
+		}
+
+		assertIdle(endpoint.url("/retained"));
+		for (WeakReference<byte[]> body : bodies) {
+			for (int i = 0; body.get() != null && i < 50; i++) {
+				System.gc();
+				Thread.sleep(20);
+			}
+			Assert.assertNull(body.get());
+		}
+	}
+
+	/**
+	 * Starts deliveries through the {@link DeliveryService}, each with its
+	 * own body.
+	 *
+	 * @return the bodies, to check they are not retained
+	 */
+	private static List<WeakReference<byte[]>> deliver(Webhook webhook, int deliveries, int size) {
+		List<WeakReference<byte[]>> bodies = new ArrayList<WeakReference<byte[]>>();
+		for (int i = 0; i < deliveries; i++) {
+			byte[] body = new byte[size];
+			body[0] = (byte) i;
+			bodies.add(new WeakReference<byte[]>(body));
+			DeliveryService.deliver(webhook, "job", new Payload(body, "text/plain"), "delivery-" + i, LOGGER);
+		}
+		return bodies;
+	}
+
+	private static Webhook webhook(String url, int timeout) {
+		return new Webhook(url, true, true, true, true, true, true, true, timeout);
+	}
+
+	/**
+	 * Runs the workers concurrently.
+	 *
+	 * @return milliseconds until all of them finished
+	 */
+	private static long runAll(List<HttpWorker> workers) throws InterruptedException {
+		ExecutorService executor = Executors.newFixedThreadPool(workers.size());
+		long start = System.nanoTime();
+		for (HttpWorker worker : workers) {
+			executor.submit(worker);
+		}
+		executor.shutdown();
+		Assert.assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+	}
+
+	/**
+	 * Whether all deliveries to the url finished, none is queued, waiting
+	 * for a permit or running.
+	 */
+	private static boolean isIdle(String url) {
+		DeliveryStats.Endpoint stats = DeliveryStats.forUrl(url);
+		return stats.getQueued() == 0 && stats.getLimit().getInFlight() == 0 && stats.getLimit().getWaiting() == 0;
+	}
+
+	private static void assertIdle(String url) {
+		DeliveryStats.Endpoint stats = DeliveryStats.forUrl(url);
+		Assert.assertEquals(0, stats.getQueued());
+		Assert.assertEquals(0, stats.getInFlight());
+		Assert.assertEquals(0, stats.getLimit().getInFlight());
+		Assert.assertEquals(0, stats.getLimit().getWaiting());
+	}
+
+	/**
+	 * Notifier threads running a delivery. Idle threads the pool keeps
+	 * cached are not counted.
+	 */
+	private static int countBusyNotifierThreads() {
+		int count = 0;
+		for (Map.Entry<Thread, StackTraceElement[]> thread : Thread.getAllStackTraces().entrySet()) {
+			if (!thread.getKey().getName().startsWith("Workplace notifier")) {
+				continue;
+			}
+			for (StackTraceElement frame : thread.getValue()) {
+				if (frame.getClassName().equals(HttpWorker.class.getName())) {
+					count++;
+					break;
+				}
+			}
+		}
+		return count;
+	}
+
+	enum Fault {
+		/**
+		 * Answers after {@code delay} milliseconds.
+		 */
+		SLOW,
+
+		/**
+		 * Resets the connection once the request was read.
+		 */
+		RESET,
+
+		/**
+		 * Sends a 200 with a body shorter than its Content-Length and closes
+		 * the connection.
+		 */
+		PARTIAL,
+
+		/**
+		 * Answers the first {@code failFirst} requests with 429 and
+		 * Retry-After: 1.
+		 */
+		RATE_LIMITED,
+
+		/**
+		 * Answers the first {@code failFirst} requests with 503.
+		 */
+		STORM
+	}
+
+	/**
+	 * HTTP endpoint on a plain server socket, one connection per request.
+	 */
+	static final class StubEndpoint implements Runnable {
+
+		private final Fault fault;
+
+		private final ServerSocket server;
+
+		private final ExecutorService handlers = Executors.newCachedThreadPool();
+
+		volatile long delay;
+
+		volatile int failFirst;
+
+		final AtomicInteger requests = new AtomicInteger();
+
+		final AtomicInteger acknowledgements = new AtomicInteger();
+
+		final AtomicInteger concurrent = new AtomicInteger();
+
+		final AtomicInteger maxConcurrent = new AtomicInteger();
+
+		/**
+		 * Delivery ids of requests answered with 200.
+		 */
+		final Set<String> acknowledged = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+		/**
+		 * {@link System#nanoTime()} of each request.
+		 */
+		final List<Long> times = new CopyOnWriteArrayList<Long>();
+
+		StubEndpoint(Fault fault) throws IOException {
+			this.fault = fault;
+			this.server = new ServerSocket(0, 200, InetAddress.getByName("127.0.0.1"));
+			Thread acceptor = new Thread(this, "Stub endpoint " + fault);
+			acceptor.setDaemon(true);
+			acceptor.start();
+		}
+
+		String url(String path) {
+			return "http://127.0.0.1:" + server.getLocalPort() + path;
+		}
+
+		void close() throws IOException {
+			server.close();
+			handlers.shutdownNow();
+		}
+
+		public void run() {
+			while (!server.isClosed()) {
+				try {
+					final Socket socket = server.accept();
+					handlers.execute(new Runnable() {
+						public void run() {
+							handle(socket);
+						}
+					});
+				} catch (IOException e) {
+					// closed
+				}
+			}
+		}
+
+		private void handle(Socket socket) {
+			int now = concurrent.incrementAndGet();
+			while (true) {
+				int max = maxConcurrent.get();
+				if (now <= max || maxConcurrent.compareAndSet(max, now)) {
+					break;
+				}
+			}
+			try {
+				InputStream in = socket.getInputStream();
+				String deliveryId = readRequest(in);
+				int request = requests.incrementAndGet();
+				times.add(System.nanoTime());
+				OutputStream out = socket.getOutputStream();
+				switch (fault) {
+				case SLOW:
+					Thread.sleep(delay);
+					respond(out, 200, null, deliveryId);
+					break;
+				case RESET:
+					socket.setSoLinger(true, 0);
+					break;
+				case PARTIAL:
+					out.write("HTTP/1.1 200 OK\r\nContent-Length: 100\r\nConnection: close\r\n\r\nabc".getBytes(UTF_8));
+					out.flush();
+					acknowledge(deliveryId);
+					break;
+				case RATE_LIMITED:
+					if (request <= failFirst) {
+						respond(out, 429, "Retry-After: 1\r\n", null);
+					} else {
+						respond(out, 200, null, deliveryId);
+					}
+					break;
+				case STORM:
+					if (request <= failFirst) {
+						respond(out, 503, null, null);
+					} else {
+						respond(out, 200, null, deliveryId);
+					}
+					break;
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (SocketException e) {
+				// the client gave up
+			} catch (IOException e) {
+				e.printStackTrace();
+			} finally {
+				concurrent.decrementAndGet();
+				try {
+					socket.close();
+				} catch (IOException e) {
+					// closed anyway
+				}
+			}
+		}
+
+		private void respond(OutputStream out, int status, String headers, String deliveryId) throws IOException {
+			String body = status == 200 ? "ok" : "failed";
+			out.write(("HTTP/1.1 " + status + " Stub\r\nContent-Type: text/plain\r\nContent-Length: "
+					+ body.length() + "\r\nConnection: close\r\n" + (headers == null ? "" : headers) + "\r\n" + body)
+					.getBytes(UTF_8));
+			out.flush();
+			if (deliveryId != null) {
+				acknowledge(deliveryId);
+			}
+		}
+
+		private void acknowledge(String deliveryId) {
+			acknowledgements.incrementAndGet();
+			acknowledged.add(deliveryId);
+		}
+
+		/**
+		 * Reads the request head and body.
+		 *
+		 * @return the delivery id header
+		 */
+		private static String readRequest(InputStream in) throws IOException {
+			ByteArrayOutputStream head = new ByteArrayOutputStream();
+			int matched = 0;
+			while (matched < 4) {
+				int b = in.read();
+				if (b < 0) {
+					throw new SocketException("Closed before the request was read");
+				}
+				head.write(b);
+				matched = (b == '\r' && (matched == 0 || matched == 2)) || (b == '\n' && (matched == 1 || matched == 3))
+						? matched + 1 : b == '\r' ? 1 : 0;
+			}
+			String deliveryId = null;
+			int length = 0;
+			for (String line : new String(head.toByteArray(), UTF_8).split("\r\n")) {
+				int colon = line.indexOf(':');
+				if (colon < 0) {
+					continue;
+				}
+				String name = line.substring(0, colon).trim();
+				String value = line.substring(colon + 1).trim();
+				if (name.equalsIgnoreCase("Content-Length")) {
+					length = Integer.parseInt(value);
+				} else if (name.equalsIgnoreCase(PayloadSigner.DELIVERY_HEADER)) {
+					deliveryId = value;
+				}
+			}
+			byte[] body = new byte[8192];
+			while (length > 0) {
+				int read = in.read(body, 0, Math.min(body.length, length));
+				if (read < 0) {
+					throw new SocketException("Closed before the body was read");
+				}
+				length -= read;
+			}
+			return deliveryId;
+		}
+	}
+}
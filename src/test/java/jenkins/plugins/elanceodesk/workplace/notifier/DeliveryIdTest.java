@@ -0,0 +1,43 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Testing the event and delivery ids.
+ *
+ */
+public class DeliveryIdTest {
+
+	@Test
+	public void testEventIdsAreStable() {
+		Assert.assertEquals(DeliveryId.forEvent("a", "job", 5, Phase.STARTED, null),
+				DeliveryId.forEvent("a", "job", 5, Phase.STARTED, null));
+		Assert.assertFalse(DeliveryId.forEvent("a", "job", 5, Phase.STARTED, null).equals(
+				DeliveryId.forEvent("a", "job", 5, Phase.COMPLETED, null)));
+		Assert.assertFalse(DeliveryId.forEvent("a", "job", 5, Phase.STARTED, null).equals(
+				DeliveryId.forEvent("a", "job", 5, Phase.STARTED, "1")));
+	}
+
+	@Test
+	public void testSameJobOnOtherControllerGetsOtherIds() {
+		String a = DeliveryId.forEvent("controller-a", "job", 5, Phase.COMPLETED, null);
+		String b = DeliveryId.forEvent("controller-b", "job", 5, Phase.COMPLETED, null);
+		Assert.assertFalse(a.equals(b));
+		Assert.assertFalse(DeliveryId.forDelivery(a, "http://localhost:8000/hook").equals(
+				DeliveryId.forDelivery(b, "http://localhost:8000/hook")));
+	}
+}
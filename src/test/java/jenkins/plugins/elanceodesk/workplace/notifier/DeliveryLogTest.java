@@ -0,0 +1,79 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Testing level gating and the rotating file of the delivery log.
+ *
+ */
+public class DeliveryLogTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testBuildLogText() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		PrintStream logger = new PrintStream(out, true, "UTF-8");
+		DeliveryLog.event(DeliveryLog.Event.REJECTED, logger).url("http://localhost:8000/hook").status(503)
+				.detail("busy").log();
+		DeliveryLog.event(DeliveryLog.Event.ATTEMPT, logger).url("http://localhost:8000/hook").attempt(1).log();
+		// below the default level
+		DeliveryLog.event(DeliveryLog.Event.CHANGESET_ENTRY, logger).detail("entry").log();
+		String nl = System.getProperty("line.separator");
+		Assert.assertEquals("Posting data to - http://localhost:8000/hook may have failed. Webhook responded with "
+				+ "status code - 503" + nl + "Message from webhook - busy" + nl
+				+ "Posting data to webhook - http://localhost:8000/hook. Already Tried 1 times" + nl,
+				out.toString("UTF-8"));
+	}
+
+	@Test
+	public void testPendingLinesAreFlushed() throws Exception {
+		File file = new File(folder.getRoot(), "deliveries.log");
+		DeliveryLog.FileSink sink = new DeliveryLog.FileSink(file, 1024, 2);
+		sink.write("{\"n\":0}\n", false);
+		Assert.assertEquals("", read(file));
+		sink.flush();
+		Assert.assertEquals("{\"n\":0}\n", read(file));
+		sink.close();
+	}
+
+	@Test
+	public void testFileRotation() throws Exception {
+		File file = new File(folder.getRoot(), "deliveries.log");
+		DeliveryLog.FileSink sink = new DeliveryLog.FileSink(file, 1, 2);
+		for (int i = 0; i < 4; i++) {
+			sink.write("{\"n\":" + i + "}\n", false);
+		}
+		sink.close();
+		Assert.assertEquals("{\"n\":3}\n", read(file));
+		Assert.assertEquals("{\"n\":2}\n", read(new File(file.getPath() + ".1")));
+		Assert.assertEquals("{\"n\":1}\n", read(new File(file.getPath() + ".2")));
+		Assert.assertFalse(new File(file.getPath() + ".3").exists());
+	}
+
+	private static String read(File file) throws Exception {
+		return FileUtils.readFileToString(file, "UTF-8");
+	}
+}
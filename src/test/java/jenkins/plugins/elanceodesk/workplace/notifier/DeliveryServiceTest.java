@@ -0,0 +1,149 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import jenkins.plugins.elanceodesk.workplace.notifier.DeliveryFaultInjectionTest.Fault;
+import jenkins.plugins.elanceodesk.workplace.notifier.DeliveryFaultInjectionTest.StubEndpoint;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Testing the DeliveryService lifecycle: deliveries that miss the drain
+ * deadline on shutdown, and deliveries made while paused, are stored in
+ * the hand-off store and sent when it is replayed.
+ *
+ */
+public class DeliveryServiceTest {
+
+	private static final PrintStream LOGGER = new PrintStream(new ByteArrayOutputStream());
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private FileOutbox store;
+
+	private StubEndpoint endpoint;
+
+	@Before
+	public void setUp() throws IOException {
+		store = new FileOutbox(folder.newFolder("workplace-handoff"));
+		DeliveryService.restart(store);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		DeliveryService.restart(null);
+		if (endpoint != null) {
+			endpoint.close();
+		}
+	}
+
+	@Test(timeout = 60000)
+	public void testDeliveriesPastTheDrainDeadlineAreHandedOffAndReplayed() throws Exception {
+		endpoint = new StubEndpoint(Fault.SLOW);
+		endpoint.delay = 5000;
+		deliver(endpoint.url("/drain"), 3);
+		while (endpoint.requests.get() < 3) {
+			Thread.sleep(10);
+		}
+
+		DeliveryService.shutdown(100);
+		// stored by the hand-off, not left to the answer that comes later
+		Assert.assertEquals(3, store.size());
+		Assert.assertEquals(0, endpoint.acknowledged.size());
+
+		DeliveryService.restart(store);
+		endpoint.delay = 0;
+		DeliveryService.replay();
+		Assert.assertEquals(0, store.size());
+		Assert.assertEquals(6, endpoint.requests.get());
+	}
+
+	@Test(timeout = 60000)
+	public void testDeliveriesWhilePausedAreSentOnResume() throws Exception {
+		endpoint = new StubEndpoint(Fault.SLOW);
+		DeliveryService.pause();
+		Assert.assertTrue(DeliveryService.isPaused());
+		deliver(endpoint.url("/paused"), 2);
+
+		Assert.assertEquals(2, DeliveryService.getStored());
+		Assert.assertEquals(0, endpoint.requests.get());
+
+		DeliveryService.resume();
+		Assert.assertFalse(DeliveryService.isPaused());
+		while (endpoint.acknowledged.size() < 2 || DeliveryService.getStored() > 0) {
+			Thread.sleep(10);
+		}
+		Assert.assertTrue(endpoint.acknowledged.contains("delivery-0"));
+		Assert.assertTrue(endpoint.acknowledged.contains("delivery-1"));
+		Assert.assertEquals(2, endpoint.requests.get());
+	}
+
+	@Test(timeout = 60000)
+	public void testWaitingDeliveriesAreNotStartedWhilePaused() throws Exception {
+		endpoint = new StubEndpoint(Fault.SLOW);
+		endpoint.delay = 500;
+		int deliveries = ConcurrencyLimit.INITIAL_LIMIT + 2;
+		deliver(endpoint.url("/waiting"), deliveries);
+		DeliveryStats.Endpoint stats = DeliveryStats.forUrl(endpoint.url("/waiting"));
+		ConcurrencyLimit limit = stats.getLimit();
+		Assert.assertEquals(2, limit.getWaiting());
+		Assert.assertEquals(2, stats.getQueued());
+
+		DeliveryService.pause();
+		while (limit.getInFlight() > 0) {
+			Thread.sleep(10);
+		}
+		Assert.assertEquals(2, limit.getWaiting());
+		Assert.assertEquals(ConcurrencyLimit.INITIAL_LIMIT, endpoint.requests.get());
+		Assert.assertEquals(2, stats.getQueued());
+
+		DeliveryService.resume();
+		while (endpoint.acknowledged.size() < deliveries || limit.getInFlight() > 0) {
+			Thread.sleep(10);
+		}
+		Assert.assertEquals(deliveries, endpoint.acknowledged.size());
+		Assert.assertEquals(0, DeliveryService.getStored());
+		Assert.assertEquals(0, stats.getQueued());
+	}
+
+	@Test(timeout = 60000)
+	public void testReplayWaitsWhilePaused() throws Exception {
+		endpoint = new StubEndpoint(Fault.SLOW);
+		DeliveryService.pause();
+		deliver(endpoint.url("/still-paused"), 1);
+
+		DeliveryService.replay();
+		Assert.assertEquals(1, store.size());
+		Assert.assertEquals(0, endpoint.requests.get());
+	}
+
+	private static void deliver(String url, int deliveries) {
+		Webhook webhook = new Webhook(url, true, true, true, true, true, true, true, 30000);
+		for (int i = 0; i < deliveries; i++) {
+			Payload payload = new Payload(("{\"delivery\":" + i + "}").getBytes(), PayloadFormat.JSON
+					.getContentType());
+			DeliveryService.deliver(webhook, "job", payload, "delivery-" + i, LOGGER);
+		}
+	}
+}
@@ -0,0 +1,128 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Testing the line based sinks.
+ *
+ */
+public class DeliverySinkTest {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testFileSinkWritesOneLinePerPayload() throws Exception {
+		final File file = new File(folder.getRoot(), "builds.ndjson");
+		final NdjsonFileSink sink = new NdjsonFileSink(folder.getRoot().getPath());
+		final URI uri = file.toURI();
+		sink.validate(uri);
+		sink.send(uri, json("{\"a\":\n1}"), 1000);
+
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < 8; i++) {
+			final int n = i;
+			Thread thread = new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (int j = 0; j < 25; j++) {
+							sink.send(uri, json("{\"n\":" + n + "}"), 1000);
+						}
+					} catch (Exception e) {
+						throw new IllegalStateException(e);
+					}
+				}
+			};
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		List<String> lines = FileUtils.readLines(file, "UTF-8");
+		Assert.assertEquals(201, lines.size());
+		Assert.assertEquals("{\"a\": 1}", lines.get(0));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testCompressedPayloadIsRejected() throws Exception {
+		File file = new File(folder.getRoot(), "builds.ndjson");
+		new NdjsonFileSink(folder.getRoot().getPath()).send(file.toURI(), json("{}").gzip(), 1000);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testFileSinkIsDisabledByDefault() throws Exception {
+		new NdjsonFileSink(null).validate(new File(folder.getRoot(), "builds.ndjson").toURI());
+	}
+
+	@Test
+	public void testFileSinkOnlyWritesBelowItsDirectory() throws Exception {
+		File allowed = folder.newFolder("allowed");
+		File other = folder.newFolder("other");
+		NdjsonFileSink sink = new NdjsonFileSink(allowed.getPath());
+		sink.validate(new File(allowed, "builds.ndjson").toURI());
+		for (URI uri : new URI[] { new File(other, "builds.ndjson").toURI(),
+				new URI("file://" + allowed.toURI().getPath() + "../other/builds.ndjson"), allowed.toURI() }) {
+			try {
+				sink.send(uri, json("{}"), 1000);
+				Assert.fail(uri.toString());
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+		Assert.assertFalse(new File(other, "builds.ndjson").exists());
+	}
+
+	@Test
+	public void testTcpSink() throws Exception {
+		ServerSocket server = new ServerSocket(0);
+		try {
+			URI uri = new URI("tcp://127.0.0.1:" + server.getLocalPort());
+			TcpSink sink = new TcpSink();
+			sink.validate(uri);
+			sink.send(uri, json("{\"n\":1}"), 1000);
+			sink.send(uri, json("{\"n\":2}"), 1000);
+			Socket socket = server.accept();
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF_8));
+			Assert.assertEquals("{\"n\":1}", in.readLine());
+			Assert.assertEquals("{\"n\":2}", in.readLine());
+			socket.close();
+		} finally {
+			server.close();
+		}
+	}
+
+	private static Payload json(String body) {
+		return new Payload(body.getBytes(UTF_8), PayloadFormat.JSON.getContentType());
+	}
+}
@@ -0,0 +1,67 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Testing the per endpoint delivery stats.
+ *
+ */
+public class DeliveryStatsTest {
+
+	@Test
+	public void testEndpointOf() {
+		Assert.assertEquals("http://localhost:8000", DeliveryStats.endpointOf("http://localhost:8000/hook?x=1"));
+		Assert.assertEquals("https://example.com", DeliveryStats.endpointOf("https://example.com/a/b"));
+	}
+
+	@Test
+	public void testLatencyAndHealth() {
+		DeliveryStats.Endpoint endpoint = new DeliveryStats.Endpoint("http://test");
+		Assert.assertEquals(DeliveryStats.Health.HEALTHY, endpoint.getHealth());
+		for (int i = 1; i <= 100; i++) {
+			endpoint.attemptStarted();
+			endpoint.attemptCompleted(TimeUnit.MILLISECONDS.toNanos(i), true);
+		}
+		Assert.assertEquals(50d, endpoint.getLatency(50), 0.001);
+		Assert.assertEquals(99d, endpoint.getLatency(99), 0.001);
+		Assert.assertEquals(100, endpoint.getSuccessRate());
+		Assert.assertEquals(0, endpoint.getInFlight());
+
+		endpoint.attemptStarted();
+		endpoint.attemptCompleted(TimeUnit.MILLISECONDS.toNanos(1), false);
+		Assert.assertEquals(DeliveryStats.Health.DEGRADED, endpoint.getHealth());
+		for (int i = 0; i < 10; i++) {
+			endpoint.attemptStarted();
+			endpoint.attemptCompleted(TimeUnit.MILLISECONDS.toNanos(1), false);
+		}
+		Assert.assertEquals(DeliveryStats.Health.FAILING, endpoint.getHealth());
+		Assert.assertEquals(11, endpoint.getFailures());
+	}
+
+	@Test
+	public void testRingBufferKeepsMostRecent() {
+		RingBuffer<Integer> buffer = new RingBuffer<Integer>(3);
+		for (int i = 0; i < 5; i++) {
+			buffer.add(i);
+		}
+		List<Integer> snapshot = buffer.snapshot();
+		Assert.assertEquals("[4, 3, 2]", snapshot.toString());
+	}
+}
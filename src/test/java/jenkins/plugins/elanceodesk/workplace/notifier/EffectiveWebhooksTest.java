@@ -0,0 +1,92 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import hudson.model.Job;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.powermock.reflect.Whitebox;
+
+/**
+ * Testing how the webhooks of a job are combined with inherited ones.
+ *
+ */
+public class EffectiveWebhooksTest {
+
+	@Test
+	public void testGlobalAndFolderWebhooks() {
+		Webhook all = webhook("http://localhost:8000/all", null);
+		Webhook team = webhook("http://localhost:8000/team", "/team/");
+		Webhook other = webhook("http://localhost:8000/other", "other");
+		List<Webhook> global = Arrays.asList(all, team, other);
+
+		Assert.assertEquals(Arrays.asList(all, team), EffectiveWebhooks.resolve("team/services/api", null, global));
+		Assert.assertEquals(Arrays.asList(all), EffectiveWebhooks.resolve("team-b/api", null, global));
+		Assert.assertEquals(Arrays.asList(all), EffectiveWebhooks.resolve("team", null, global));
+	}
+
+	@Test
+	public void testOwnWebhooksOverrideInherited() {
+		Webhook inherited = webhook("http://localhost:8000/all", null);
+		Webhook own = webhook("http://localhost:8000/all", null);
+		Webhook extra = webhook("http://localhost:8000/extra", null);
+		WebhookJobProperty property = new WebhookJobProperty(Arrays.asList(own, extra));
+		List<Webhook> global = Collections.singletonList(inherited);
+
+		Assert.assertEquals(Arrays.asList(own, extra), EffectiveWebhooks.resolve("job", property, global));
+
+		property = new WebhookJobProperty(Collections.singletonList(extra));
+		property.setSkipInherited(true);
+		Assert.assertEquals(Arrays.asList(extra), EffectiveWebhooks.resolve("job", property, global));
+	}
+
+	@Test
+	public void testCacheDoesNotKeepDeletedJobs() throws InterruptedException {
+		WeakReference<Job> deleted = new WeakReference<Job>(cacheJob("deleted"));
+		// the last call on a mock is remembered until another mock is called
+		Mockito.mock(Runnable.class).run();
+		for (int i = 0; i < 50 && deleted.get() != null; i++) {
+			System.gc();
+			Thread.sleep(20);
+		}
+		Assert.assertNull(deleted.get());
+	}
+
+	@SuppressWarnings("rawtypes")
+	private static Job cacheJob(String name) {
+		Job job = Mockito.mock(Job.class);
+		WebhookJobProperty property = new WebhookJobProperty(Collections.singletonList(webhook(
+				"http://localhost:8000/" + name, null)));
+		// like a loaded job, the property refers back to its owner
+		Whitebox.setInternalState(property, "owner", job);
+		Mockito.when(job.getProperty(WebhookJobProperty.class)).thenReturn(property);
+		Mockito.when(job.getFullName()).thenReturn(name);
+		Assert.assertEquals(property.getWebhooks(), EffectiveWebhooks.of(job));
+		Assert.assertSame(EffectiveWebhooks.of(job), EffectiveWebhooks.of(job));
+		return job;
+	}
+
+	private static Webhook webhook(String url, String folder) {
+		Webhook webhook = new Webhook(url, true, true, true, true, true, true, true, Webhook.DEFAULT_TIMEOUT);
+		webhook.setFolder(folder);
+		return webhook;
+	}
+}
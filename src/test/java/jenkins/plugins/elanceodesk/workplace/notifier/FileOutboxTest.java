@@ -0,0 +1,120 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Testing the file outbox and the per endpoint rate limits of its workers.
+ *
+ */
+public class FileOutboxTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testOfferPollComplete() throws Exception {
+		FileOutbox outbox = new FileOutbox(folder.getRoot());
+		OutboxEntry entry = entry("http://localhost:8000/hook", "1");
+		Assert.assertTrue(outbox.offer(entry));
+		Assert.assertEquals(1, outbox.size());
+
+		OutboxEntry claimed = outbox.poll();
+		Assert.assertNotNull(claimed);
+		Assert.assertEquals("1", claimed.getDeliveryId());
+		Assert.assertEquals("{}", new String(claimed.getData(), "UTF-8"));
+		Assert.assertNull(outbox.poll());
+
+		outbox.complete(claimed);
+		Assert.assertEquals(0, outbox.size());
+	}
+
+	@Test
+	public void testDuplicatesAreDropped() throws Exception {
+		FileOutbox outbox = new FileOutbox(folder.getRoot());
+		Assert.assertTrue(outbox.offer(entry("http://localhost:8000/hook", "1")));
+		// another controller sharing the directory
+		Assert.assertFalse(new FileOutbox(folder.getRoot()).offer(entry("http://localhost:8000/hook", "1")));
+		Assert.assertEquals(1, outbox.size());
+	}
+
+	@Test
+	public void testFailedOfferCanBeRepeated() throws Exception {
+		FileOutbox outbox = new FileOutbox(folder.getRoot());
+		// entries are written through the tmp directory
+		File tmp = folder.newFile("tmp");
+		try {
+			outbox.offer(entry("http://localhost:8000/hook", "1"));
+			Assert.fail();
+		} catch (IOException e) {
+			// expected
+		}
+		Assert.assertTrue(tmp.delete());
+		Assert.assertTrue(outbox.offer(entry("http://localhost:8000/hook", "1")));
+		Assert.assertEquals(1, outbox.size());
+	}
+
+	@Test
+	public void testReleasedEntryIsNotDueYet() throws Exception {
+		FileOutbox outbox = new FileOutbox(folder.getRoot());
+		outbox.offer(entry("http://localhost:8000/hook", "1"));
+		OutboxEntry claimed = outbox.poll();
+		outbox.release(claimed, claimed.retry(60000, true));
+		Assert.assertEquals(1, outbox.size());
+		Assert.assertNull(outbox.poll());
+	}
+
+	@Test
+	public void testEntrySerialization() throws Exception {
+		OutboxEntry entry = entry("https://example.com:8443/hook?x=1", "1").retry(0, true);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		entry.writeTo(out);
+		OutboxEntry read = OutboxEntry.readFrom(new ByteArrayInputStream(out.toByteArray()));
+		Assert.assertEquals(entry.getUrl(), read.getUrl());
+		Assert.assertEquals(1, read.getAttempts());
+		Assert.assertEquals("https://example.com:8443", read.getEndpoint());
+		Assert.assertArrayEquals(entry.getData(), read.getData());
+	}
+
+	@Test
+	public void testRateLimitPerEndpoint() {
+		EndpointRateLimiter limiter = new EndpointRateLimiter(1, 2);
+		Assert.assertEquals(0, limiter.tryAcquire("a", 0));
+		Assert.assertEquals(0, limiter.tryAcquire("a", 0));
+		Assert.assertEquals(1000, limiter.tryAcquire("a", 0));
+		Assert.assertEquals(0, limiter.tryAcquire("b", 0));
+		Assert.assertEquals(0, limiter.tryAcquire("a", 1000));
+	}
+
+	private static OutboxEntry entry(String url, String deliveryId) {
+		Webhook webhook = mock(Webhook.class);
+		when(webhook.getUrl()).thenReturn(url);
+		when(webhook.getTimeout()).thenReturn(30000);
+		Payload payload = new Payload("{}".getBytes(Charset.forName("UTF-8")), PayloadFormat.JSON.getContentType());
+		return OutboxEntry.create(webhook, "job", payload, deliveryId);
+	}
+}
@@ -16,6 +16,7 @@ package jenkins.plugins.elanceodesk.workplace.notifier;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintStream;
+import java.nio.charset.Charset;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.util.concurrent.ExecutorService;
@@ -30,6 +31,7 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mockito;
+import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 import org.simpleframework.http.Path;
@@ -42,13 +44,15 @@ import org.simpleframework.transport.Server;
 import org.simpleframework.transport.connect.Connection;
 import org.simpleframework.transport.connect.SocketConnection;
 
+import hudson.util.Secret;
+
 /**
  * Testing HttpWorker which sends post messages with multiple
  * retries.
  *
  */
 @RunWith(PowerMockRunner.class)
-@PrepareForTest({Phase.class, HttpWorker.class})
+@PrepareForTest({Phase.class, HttpWorker.class, Secret.class})
 public class HttpWorkerTest {
 
 	WebhookJobProperty property;
@@ -93,8 +97,58 @@ public class HttpWorkerTest {
 		Assert.assertTrue(MyHandler.getRetryTestResult());
 	}
 	
+	@Test
+	public void testSignedHeaders() throws InterruptedException {
+		String plainSecret = "It's a Secret to Everybody";
+		Secret secret = PowerMockito.mock(Secret.class);
+		Mockito.when(secret.getPlainText()).thenReturn(plainSecret);
+		PowerMockito.mockStatic(Secret.class);
+		Mockito.when(Secret.toString(secret)).thenReturn(plainSecret);
+		Webhook webhook = new Webhook("http://localhost:8000/signed", true, true, true, true, true, true, true, 30000);
+		webhook.setSecret(secret);
+		byte[] body = "{\"build\":{}}".getBytes(Charset.forName("UTF-8"));
+		long before = System.currentTimeMillis() / 1000L;
+		ExecutorService executorService = Executors.newCachedThreadPool();
+		executorService.submit(new HttpWorker(webhook, new Payload(body, PayloadFormat.JSON.getContentType()),
+				"delivery-1", 1, Mockito.mock(PrintStream.class)));
+		executorService.shutdown();
+		executorService.awaitTermination(5, TimeUnit.SECONDS);
+		long after = System.currentTimeMillis() / 1000L;
+
+		Assert.assertEquals("delivery-1", MyHandler.signedDelivery);
+		Assert.assertEquals("delivery-1", MyHandler.signedIdempotencyKey);
+		long timestamp = Long.parseLong(MyHandler.signedTimestamp);
+		Assert.assertTrue(timestamp >= before && timestamp <= after);
+		Assert.assertEquals(PayloadSigner.sign(plainSecret, MyHandler.signedTimestamp, body),
+				MyHandler.signedSignature);
+	}
+
+	@Test
+	public void testUnsignedHeaders() throws InterruptedException {
+		ExecutorService executorService = Executors.newCachedThreadPool();
+		executorService.submit(new HttpWorker("http://localhost:8000/unsigned", "{}", 30000, 1, Mockito
+				.mock(PrintStream.class)));
+		executorService.shutdown();
+		executorService.awaitTermination(5, TimeUnit.SECONDS);
+		Assert.assertNotNull(MyHandler.unsignedDelivery);
+		Assert.assertFalse(MyHandler.unsignedHasSignature);
+	}
+
 	static class MyHandler implements Container {
 		
+		static volatile String signedDelivery;
+
+		static volatile String signedIdempotencyKey;
+
+		static volatile String signedTimestamp;
+
+		static volatile String signedSignature;
+
+		static volatile String unsignedDelivery;
+
+		static volatile boolean unsignedHasSignature;
+
+		
 		static int trialTestRetries = 0;
 		
 		static boolean test1Result = false;
@@ -127,6 +181,15 @@ public class HttpWorkerTest {
 	            	if(requestBody.equals("test2body")) {
 	            		test2Result = true;
 	            	}
+	            } else if("/signed".equals(pathString)) {
+	            	signedDelivery = request.getValue(PayloadSigner.DELIVERY_HEADER);
+	            	signedIdempotencyKey = request.getValue(DeliveryId.IDEMPOTENCY_KEY_HEADER);
+	            	signedTimestamp = request.getValue(PayloadSigner.TIMESTAMP_HEADER);
+	            	signedSignature = request.getValue(PayloadSigner.SIGNATURE_HEADER);
+	            } else if("/unsigned".equals(pathString)) {
+	            	unsignedDelivery = request.getValue(PayloadSigner.DELIVERY_HEADER);
+	            	unsignedHasSignature = request.getValue(PayloadSigner.SIGNATURE_HEADER) != null
+	            			|| request.getValue(PayloadSigner.TIMESTAMP_HEADER) != null;
 	            } else if("/retry-test".equals(pathString)) {
 	            	if(trialTestRetries < retries-1) {
 	            		response.setCode(Status.INTERNAL_SERVER_ERROR.code);
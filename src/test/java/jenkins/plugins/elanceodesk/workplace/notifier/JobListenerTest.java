@@ -0,0 +1,55 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+/**
+ * Testing where the start of a build is notified.
+ *
+ */
+public class JobListenerTest {
+
+	@Test
+	public void testFreestyleJobWithoutPropertyNotifiesGlobalWebhooksOnStart() {
+		FreeStyleProject project = Mockito.mock(FreeStyleProject.class);
+		FreeStyleBuild build = Mockito.mock(FreeStyleBuild.class);
+		Mockito.when(build.getParent()).thenReturn(project);
+		Webhook global = new Webhook("http://localhost:8000/all", true, true, true, true, true, true, true,
+				Webhook.DEFAULT_TIMEOUT);
+
+		Assert.assertTrue(JobListener.isStartedHere(build));
+		List<Webhook> targets = EffectiveWebhooks.resolve("job", null, Collections.singletonList(global));
+		Assert.assertEquals(Collections.singletonList(global), targets);
+	}
+
+	@Test
+	public void testFreestyleJobWithPropertyIsNotifiedFromPrebuild() {
+		FreeStyleProject project = Mockito.mock(FreeStyleProject.class);
+		FreeStyleBuild build = Mockito.mock(FreeStyleBuild.class);
+		Mockito.when(build.getParent()).thenReturn(project);
+		Mockito.when(project.getProperty(WebhookJobProperty.class)).thenReturn(
+				new WebhookJobProperty(Collections.<Webhook> emptyList()));
+
+		Assert.assertFalse(JobListener.isStartedHere(build));
+	}
+}
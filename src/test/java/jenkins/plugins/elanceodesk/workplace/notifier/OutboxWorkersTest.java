@@ -0,0 +1,64 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import hudson.util.Secret;
+
+import java.nio.charset.Charset;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+/**
+ * Testing outbox workers on a controller other than the one that queued
+ * the entries.
+ *
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(Secret.class)
+public class OutboxWorkersTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testSignedEntryWithoutSecretOnThisControllerIsParked() throws Exception {
+		// queued by a build controller that has the job and its secret
+		Webhook webhook = Mockito.mock(Webhook.class);
+		Mockito.when(webhook.getUrl()).thenReturn("http://127.0.0.1:1/hook");
+		Mockito.when(webhook.getTimeout()).thenReturn(30000);
+		Mockito.when(webhook.getSecret()).thenReturn(PowerMockito.mock(Secret.class));
+		Payload payload = new Payload("{}".getBytes(Charset.forName("UTF-8")), PayloadFormat.JSON.getContentType());
+		OutboxEntry entry = OutboxEntry.create(webhook, "team/job", payload, "1");
+		Assert.assertEquals("team/job", entry.getSecretSource());
+
+		// delivered by a controller that has neither the job nor the secret
+		FileOutbox outbox = new FileOutbox(folder.getRoot());
+		Assert.assertTrue(outbox.offer(entry));
+		Assert.assertNull(entry.resolveSecret());
+		Assert.assertTrue(new OutboxWorkers(outbox, new EndpointRateLimiter(10, 10)).deliverNext());
+
+		// kept for a controller that has the secret, not dropped as rejected
+		Assert.assertEquals(1, outbox.size());
+		Assert.assertNull(outbox.poll());
+		Assert.assertEquals(0, DeliveryStats.forUrl("http://127.0.0.1:1/hook").getSuccesses());
+	}
+}
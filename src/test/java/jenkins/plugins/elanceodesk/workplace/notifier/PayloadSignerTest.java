@@ -0,0 +1,61 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import java.nio.charset.Charset;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Testing PayloadSigner against signatures computed independently, so the
+ * scheme receivers have to reproduce cannot change unnoticed.
+ *
+ */
+public class PayloadSignerTest {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final String SECRET = "It's a Secret to Everybody";
+
+	private static final String TIMESTAMP = "1700000000";
+
+	@Test
+	public void testKnownSignature() {
+		byte[] body = "{\"build\":{\"phase\":\"STARTED\"}}".getBytes(UTF_8);
+		Assert.assertEquals("sha256=b282f2b59f5f0d4fed02a21370450a28765c43dc6bc154bb31ebf60447a5b1de",
+				PayloadSigner.sign(SECRET, TIMESTAMP, body));
+	}
+
+	@Test
+	public void testEmptyBody() {
+		Assert.assertEquals("sha256=4bc5f74d868b97888288889c5d9d65df02526f94c1592a79fdf4fe8b26e311e5",
+				PayloadSigner.sign("secret", TIMESTAMP, new byte[0]));
+	}
+
+	@Test
+	public void testCachedMacIsReset() {
+		byte[] body = "{\"build\":{\"phase\":\"STARTED\"}}".getBytes(UTF_8);
+		String first = PayloadSigner.sign(SECRET, TIMESTAMP, body);
+		PayloadSigner.sign(SECRET, "1700000001", body);
+		Assert.assertEquals(first, PayloadSigner.sign(SECRET, TIMESTAMP, body));
+	}
+
+	@Test
+	public void testTimestampIsSigned() {
+		byte[] body = "{}".getBytes(UTF_8);
+		Assert.assertFalse(PayloadSigner.sign(SECRET, TIMESTAMP, body).equals(
+				PayloadSigner.sign(SECRET, "1700000001", body)));
+	}
+}
@@ -0,0 +1,106 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import java.util.Collections;
+
+import jenkins.plugins.elanceodesk.workplace.notifier.model.BuildState;
+import jenkins.plugins.elanceodesk.workplace.notifier.model.JobState;
+import jenkins.plugins.elanceodesk.workplace.notifier.model.ScmState;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.powermock.reflect.Whitebox;
+
+/**
+ * Testing compilation and rendering of body templates.
+ *
+ */
+public class PayloadTemplateTest {
+
+	@Test
+	public void testRenderFields() throws Exception {
+		PayloadTemplate template = PayloadTemplate.compile(
+				"{\"text\":\"${name} #${build.number} ${build.phase}\",\"branch\":\"${build.scm.branch}\","
+						+ "\"target\":\"${build.parameters.deploy.target}\",\"status\":\"${build.status}\"}", null);
+		Payload payload = template.encode(jobState());
+		Assert.assertEquals(PayloadTemplate.DEFAULT_CONTENT_TYPE, payload.getContentType());
+		Assert.assertEquals("{\"text\":\"my \\\"job\\\" #42 STARTED\",\"branch\":\"master\","
+				+ "\"target\":\"prod\",\"status\":\"\"}", new String(payload.getData(), "UTF-8"));
+	}
+
+	@Test
+	public void testPlainText() throws Exception {
+		PayloadTemplate template = PayloadTemplate.compile("$${name} is ${name}\n", "text/plain; charset=UTF-8");
+		Assert.assertEquals("${name} is my \"job\"\n", new String(template.encode(jobState()).getData(), "UTF-8"));
+	}
+
+	@Test
+	public void testObjectsAsJson() throws Exception {
+		PayloadTemplate template = PayloadTemplate.compile("${build.parameters}", null);
+		Assert.assertEquals("{\"deploy.target\":\"prod\"}", new String(template.encode(jobState()).getData(),
+				"UTF-8"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownField() {
+		PayloadTemplate.compile("${build.nope}", null);
+	}
+
+	@Test
+	public void testOnlyModelGettersAreFollowed() {
+		for (String path : new String[] { "build.phase.declaring_class", "build.phase.declaring_class.class_loader",
+				"name.bytes", "build.scm.class", "build.number.class" }) {
+			try {
+				PayloadTemplate.compile("${" + path + "}", null);
+				Assert.fail(path);
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public void testLargeBufferIsNotRetained() throws Exception {
+		StringBuilder large = new StringBuilder();
+		while (large.length() <= PayloadTemplate.RETAINED_BUFFER_BYTES) {
+			large.append("0123456789");
+		}
+		JobState jobState = jobState();
+		jobState.setName(large.toString());
+		PayloadTemplate template = PayloadTemplate.compile("${name}", null);
+		Assert.assertEquals(large.toString(), new String(template.encode(jobState).getData(), "UTF-8"));
+
+		ThreadLocal<?> buffers = Whitebox.getInternalState(PayloadTemplate.class, "BUFFER");
+		byte[] bytes = Whitebox.getInternalState(buffers.get(), "bytes");
+		Assert.assertTrue("retained " + bytes.length, bytes.length <= PayloadTemplate.RETAINED_BUFFER_BYTES);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnclosedPlaceholder() {
+		PayloadTemplate.compile("${name", null);
+	}
+
+	private static JobState jobState() {
+		JobState jobState = new JobState();
+		BuildState buildState = new BuildState();
+		jobState.setName("my \"job\"");
+		jobState.setBuild(buildState);
+		buildState.setNumber(42);
+		buildState.setPhase(Phase.STARTED);
+		buildState.setScm(new ScmState("git@example.com:repo.git", "master", "abc"));
+		buildState.setParameters(Collections.singletonMap("deploy.target", "prod"));
+		return jobState;
+	}
+}
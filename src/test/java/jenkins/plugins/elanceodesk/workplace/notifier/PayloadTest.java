@@ -0,0 +1,49 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.zip.GZIPInputStream;
+
+import jenkins.plugins.elanceodesk.workplace.notifier.model.JobState;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Testing compression of encoded payloads.
+ *
+ */
+public class PayloadTest {
+
+	@Test
+	public void testGzip() throws Exception {
+		JobState jobState = new JobState();
+		jobState.setName("job");
+		Payload plain = PayloadFormat.JSON.encode(jobState);
+		Payload compressed = plain.gzip();
+		Assert.assertNull(plain.getContentEncoding());
+		Assert.assertEquals(Payload.GZIP, compressed.getContentEncoding());
+		Assert.assertEquals(plain.getContentType(), compressed.getContentType());
+
+		GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed.getData()));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[256];
+		for (int n; (n = in.read(buffer)) > 0;) {
+			out.write(buffer, 0, n);
+		}
+		Assert.assertArrayEquals(plain.getData(), out.toByteArray());
+	}
+}
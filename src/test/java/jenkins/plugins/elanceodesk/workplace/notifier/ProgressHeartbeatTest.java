@@ -0,0 +1,127 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.TaskListener;
+
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+import org.powermock.reflect.Whitebox;
+
+/**
+ * Testing which running builds get heartbeats and how often.
+ *
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(Phase.class)
+public class ProgressHeartbeatTest {
+
+	private Phase inProgress;
+
+	private Phase heartbeat;
+
+	private final TaskListener listener = Mockito.mock(TaskListener.class);
+
+	@Before
+	public void setUp() {
+		inProgress = Phase.IN_PROGRESS;
+		heartbeat = PowerMockito.mock(Phase.class);
+		Whitebox.setInternalState(Phase.class, "IN_PROGRESS", heartbeat);
+	}
+
+	@After
+	public void tearDown() {
+		Whitebox.setInternalState(Phase.class, "IN_PROGRESS", inProgress);
+	}
+
+	@Test
+	public void testOnlyBuildsAskingForProgressAreRegistered() {
+		FreeStyleBuild quiet = build("quiet", false);
+		ProgressHeartbeat.register(quiet, listener);
+		ProgressHeartbeat.beat(System.currentTimeMillis() + ProgressHeartbeat.INTERVAL);
+
+		Mockito.verifyZeroInteractions(heartbeat);
+	}
+
+	@Test
+	public void testHeartbeatsAreThrottled() {
+		FreeStyleBuild build = build("throttled", true);
+		long registered = System.currentTimeMillis();
+		ProgressHeartbeat.register(build, listener);
+		try {
+			// not before a full interval since the build started
+			ProgressHeartbeat.beat(registered);
+			Mockito.verifyZeroInteractions(heartbeat);
+
+			long due = System.currentTimeMillis() + ProgressHeartbeat.INTERVAL;
+			ProgressHeartbeat.beat(due);
+			Mockito.verify(heartbeat).handleAsync(build, listener);
+
+			ProgressHeartbeat.beat(due + ProgressHeartbeat.INTERVAL - 1);
+			Mockito.verify(heartbeat, Mockito.times(1)).handleAsync(build, listener);
+
+			ProgressHeartbeat.beat(due + ProgressHeartbeat.INTERVAL);
+			Mockito.verify(heartbeat, Mockito.times(2)).handleAsync(build, listener);
+		} finally {
+			ProgressHeartbeat.unregister(build);
+		}
+	}
+
+	@Test
+	public void testUnregisteredBuildGetsNoHeartbeat() {
+		FreeStyleBuild build = build("unregistered", true);
+		ProgressHeartbeat.register(build, listener);
+		ProgressHeartbeat.unregister(build);
+		ProgressHeartbeat.beat(System.currentTimeMillis() + ProgressHeartbeat.INTERVAL);
+
+		Mockito.verifyZeroInteractions(heartbeat);
+	}
+
+	@Test
+	public void testFinishedBuildIsDropped() {
+		FreeStyleBuild build = build("finished", true);
+		ProgressHeartbeat.register(build, listener);
+		Mockito.when(build.isBuilding()).thenReturn(false);
+		ProgressHeartbeat.beat(System.currentTimeMillis() + ProgressHeartbeat.INTERVAL);
+
+		// dropped, so a build reported running again by mistake is not picked up
+		Mockito.when(build.isBuilding()).thenReturn(true);
+		ProgressHeartbeat.beat(System.currentTimeMillis() + 2 * ProgressHeartbeat.INTERVAL);
+		Mockito.verifyZeroInteractions(heartbeat);
+	}
+
+	private static FreeStyleBuild build(String name, boolean notifyProgress) {
+		Webhook webhook = new Webhook("http://localhost:8000/" + name, true, true, true, true, true, true, true,
+				Webhook.DEFAULT_TIMEOUT);
+		webhook.setNotifyProgress(notifyProgress);
+		FreeStyleProject project = Mockito.mock(FreeStyleProject.class);
+		Mockito.when(project.getFullName()).thenReturn(name);
+		Mockito.when(project.getProperty(WebhookJobProperty.class)).thenReturn(
+				new WebhookJobProperty(Collections.singletonList(webhook)));
+		FreeStyleBuild build = Mockito.mock(FreeStyleBuild.class);
+		Mockito.when(build.getParent()).thenReturn(project);
+		Mockito.when(build.isBuilding()).thenReturn(true);
+		return build;
+	}
+}
@@ -0,0 +1,47 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Testing the event ids of build queue events.
+ *
+ */
+public class QueueNotifierTest {
+
+	@Test
+	public void testEventIdIsStable() {
+		Assert.assertEquals(QueueNotifier.eventId("job", Phase.QUEUED, 7, 1000L),
+				QueueNotifier.eventId("job", Phase.QUEUED, 7, 1000L));
+		Assert.assertFalse(QueueNotifier.eventId("job", Phase.QUEUED, 7, 1000L).equals(
+				QueueNotifier.eventId("job", Phase.LEFT_QUEUE, 7, 1000L)));
+		Assert.assertFalse(QueueNotifier.eventId("job", Phase.QUEUED, 7, 1000L).equals(
+				QueueNotifier.eventId("other", Phase.QUEUED, 7, 1000L)));
+	}
+
+	@Test
+	public void testQueueIdReusedAfterRestartGetsOtherEventId() {
+		// queue ids start over after a restart, the item entered the queue later
+		Assert.assertFalse(QueueNotifier.eventId("job", Phase.QUEUED, 7, 1000L).equals(
+				QueueNotifier.eventId("job", Phase.QUEUED, 7, 5000L)));
+	}
+
+	@Test
+	public void testQueueEventsDoNotCollideWithBuildEvents() {
+		Assert.assertFalse(QueueNotifier.eventId("job", Phase.QUEUED, 0, 0L).equals(
+				DeliveryId.forEvent("job", 0, Phase.QUEUED)));
+	}
+}
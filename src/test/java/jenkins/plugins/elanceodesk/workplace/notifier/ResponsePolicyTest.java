@@ -0,0 +1,67 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import jenkins.plugins.elanceodesk.workplace.notifier.ResponsePolicy.Outcome;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Testing classification of webhook responses.
+ *
+ */
+public class ResponsePolicyTest {
+
+	@Test
+	public void testDefaultPolicy() {
+		ResponsePolicy policy = ResponsePolicy.DEFAULT;
+		Assert.assertEquals(Outcome.SUCCESS, policy.classify(200));
+		Assert.assertEquals(Outcome.SUCCESS, policy.classify(202));
+		Assert.assertEquals(Outcome.SUCCESS, policy.classify(204));
+		Assert.assertEquals(Outcome.RETRY, policy.classify(408));
+		Assert.assertEquals(Outcome.RETRY, policy.classify(429));
+		Assert.assertEquals(Outcome.RETRY, policy.classify(503));
+		Assert.assertEquals(Outcome.TERMINAL, policy.classify(301));
+		Assert.assertEquals(Outcome.TERMINAL, policy.classify(400));
+		Assert.assertEquals(Outcome.TERMINAL, policy.classify(404));
+	}
+
+	@Test
+	public void testCustomCodes() {
+		ResponsePolicy policy = new ResponsePolicy("200, 302", "409,500-502");
+		Assert.assertEquals(Outcome.SUCCESS, policy.classify(302));
+		Assert.assertEquals(Outcome.TERMINAL, policy.classify(204));
+		Assert.assertEquals(Outcome.RETRY, policy.classify(409));
+		Assert.assertEquals(Outcome.RETRY, policy.classify(502));
+		Assert.assertEquals(Outcome.TERMINAL, policy.classify(503));
+	}
+
+	@Test
+	public void testSuccessWinsOverRetry() {
+		ResponsePolicy policy = new ResponsePolicy("200-299,503", null);
+		Assert.assertEquals(Outcome.SUCCESS, policy.classify(503));
+		Assert.assertEquals(Outcome.RETRY, policy.classify(500));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidRange() {
+		new ResponsePolicy("299-200", null);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidCode() {
+		new ResponsePolicy(null, "5xx");
+	}
+}
@@ -0,0 +1,136 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import hudson.EnvVars;
+import hudson.model.Cause;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+
+import java.nio.charset.Charset;
+import java.util.Collections;
+
+import jenkins.plugins.elanceodesk.workplace.notifier.model.JobState;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.powermock.reflect.Whitebox;
+
+/**
+ * Testing that later notifications of a build reuse the snapshot taken by
+ * the first one.
+ *
+ */
+public class RunSnapshotTest {
+
+	private final TaskListener listener = Mockito.mock(TaskListener.class);
+
+	@Test
+	public void testSnapshotIsSerializedAfterTheRunChanged() throws Exception {
+		FreeStyleProject project = project();
+		FreeStyleBuild build = build(project, "job/a/1/", "Started by user", "commit-1");
+		// taken on the build thread when the build starts
+		RunSnapshot.of(build, listener);
+		try {
+			changeBuild(build, "job/a/2/", "Started by timer", "commit-2");
+
+			String json = json(project, build);
+			Assert.assertTrue(json, json.contains("\"url\":\"job/a/1/\""));
+			Assert.assertTrue(json, json.contains("\"causes\":[\"Started by user\"]"));
+			Assert.assertTrue(json, json.contains("\"commit\":\"commit-1\""));
+			Assert.assertFalse(json, json.contains("job/a/2/"));
+			Assert.assertFalse(json, json.contains("Started by timer"));
+			Assert.assertFalse(json, json.contains("commit-2"));
+		} finally {
+			RunSnapshot.release(build);
+		}
+	}
+
+	@Test
+	public void testReleasedSnapshotIsTakenAgain() throws Exception {
+		FreeStyleBuild build = build(project(), "job/a/1/", "Started by user", "commit-1");
+		RunSnapshot first = RunSnapshot.of(build, listener);
+		changeBuild(build, "job/a/2/", "Started by timer", "commit-2");
+		Assert.assertSame(first, RunSnapshot.of(build, listener));
+
+		RunSnapshot.release(build);
+		RunSnapshot second = RunSnapshot.of(build, listener);
+		RunSnapshot.release(build);
+		Assert.assertNotSame(first, second);
+		Assert.assertEquals("job/a/2/", second.getUrl());
+		Assert.assertEquals("commit-2", second.getScm().getCommit());
+	}
+
+	@Test
+	public void testScmIsReadAgainUntilTheCommitIsKnown() throws Exception {
+		FreeStyleBuild build = build(project(), "job/a/1/", "Started by user", null);
+		RunSnapshot snapshot = RunSnapshot.of(build, listener);
+		try {
+			Assert.assertNull(snapshot.getScm().getCommit());
+			changeBuild(build, "job/a/1/", "Started by user", "commit-1");
+			snapshot.refreshScm(build, listener);
+			Assert.assertEquals("commit-1", snapshot.getScm().getCommit());
+
+			changeBuild(build, "job/a/1/", "Started by user", "commit-2");
+			snapshot.refreshScm(build, listener);
+			Assert.assertEquals("commit-1", snapshot.getScm().getCommit());
+		} finally {
+			RunSnapshot.release(build);
+		}
+	}
+
+	/**
+	 * Payload of a stage event, built like on a notifier thread.
+	 */
+	private String json(FreeStyleProject project, FreeStyleBuild build) throws Exception {
+		JobState jobState = Whitebox.invokeMethod(Phase.STAGE_STARTED, "buildJobState", new Class<?>[] { Job.class,
+				Run.class, TaskListener.class, String.class, String.class, String.class }, project, build,
+				listener, "Build", null, null);
+		return new String(PayloadFormat.JSON.encode(jobState).getData(), Charset.forName("UTF-8"));
+	}
+
+	private static FreeStyleProject project() {
+		FreeStyleProject project = Mockito.mock(FreeStyleProject.class);
+		Mockito.when(project.getName()).thenReturn("a");
+		Mockito.when(project.getFullName()).thenReturn("a");
+		Mockito.when(project.getUrl()).thenReturn("job/a/");
+		return project;
+	}
+
+	private static FreeStyleBuild build(FreeStyleProject project, String url, String cause, String commit)
+			throws Exception {
+		FreeStyleBuild build = Mockito.mock(FreeStyleBuild.class);
+		Mockito.when(build.getParent()).thenReturn(project);
+		changeBuild(build, url, cause, commit);
+		return build;
+	}
+
+	private static void changeBuild(FreeStyleBuild build, String url, String cause, String commit)
+			throws Exception {
+		Cause buildCause = Mockito.mock(Cause.class);
+		Mockito.when(buildCause.getShortDescription()).thenReturn(cause);
+		EnvVars environment = new EnvVars();
+		environment.put("GIT_URL", "git@host:a.git");
+		if (commit != null) {
+			environment.put("GIT_COMMIT", commit);
+		}
+		Mockito.when(build.getUrl()).thenReturn(url);
+		Mockito.when(build.getCauses()).thenReturn(Collections.singletonList(buildCause));
+		Mockito.when(build.getEnvironment(Mockito.any(TaskListener.class))).thenReturn(environment);
+	}
+}
@@ -0,0 +1,121 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import hudson.model.Run;
+import hudson.tasks.junit.CaseResult;
+import hudson.tasks.test.AbstractTestResultAction;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import jenkins.plugins.elanceodesk.workplace.notifier.model.TestSummary;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+/**
+ * Testing TestReport which reads the test results of a build once for all
+ * webhooks.
+ *
+ */
+@SuppressWarnings("rawtypes")
+public class TestReportTest {
+
+	@Test
+	public void testCountsDoNotLoadTheReport() {
+		AbstractTestResultAction action = action(10, 2, 1);
+		TestReport report = new TestReport(run(action));
+
+		TestSummary summary = report.getSummary(false);
+		Assert.assertEquals(10, summary.getTotal());
+		Assert.assertEquals(2, summary.getFailed());
+		Assert.assertEquals(1, summary.getSkipped());
+		Assert.assertEquals(7, summary.getPassed());
+		Assert.assertNull(summary.getNewlyFailing());
+		Assert.assertNull(summary.getNewlyFailingTruncated());
+		Mockito.verify(action, Mockito.never()).getFailedTests();
+	}
+
+	@Test
+	public void testNoTestResults() {
+		Assert.assertNull(new TestReport(run(null)).getSummary(true));
+	}
+
+	@Test
+	public void testOnlyNewlyFailingTestsAreNamed() {
+		AbstractTestResultAction action = action(5, 3, 0);
+		List<CaseResult> failed = new ArrayList<CaseResult>();
+		failed.add(caseResult("a.FirstTest.test", 1));
+		failed.add(caseResult("a.OldTest.test", 4));
+		failed.add(caseResult("a.SecondTest.test", 1));
+		Mockito.doReturn(failed).when(action).getFailedTests();
+		TestReport report = new TestReport(run(action));
+
+		TestSummary summary = report.getSummary(true);
+		Assert.assertEquals("[a.FirstTest.test, a.SecondTest.test]", summary.getNewlyFailing().toString());
+		Assert.assertNull(summary.getNewlyFailingTruncated());
+		Assert.assertSame(summary, report.getSummary(true));
+		Assert.assertNull(report.getSummary(false).getNewlyFailing());
+		Mockito.verify(action, Mockito.times(1)).getFailedTests();
+	}
+
+	@Test
+	public void testMaxFailedTests() {
+		int failing = TestReport.MAX_FAILED_TESTS + 5;
+		AbstractTestResultAction action = action(failing, failing, 0);
+		List<CaseResult> failed = new ArrayList<CaseResult>();
+		for (int i = 0; i < failing; i++) {
+			failed.add(caseResult("a.Test.test" + i, 1));
+		}
+		Mockito.doReturn(failed).when(action).getFailedTests();
+
+		TestSummary summary = new TestReport(run(action)).getSummary(true);
+		Assert.assertEquals(TestReport.MAX_FAILED_TESTS, summary.getNewlyFailing().size());
+		Assert.assertEquals("a.Test.test0", summary.getNewlyFailing().get(0));
+		Assert.assertEquals(Boolean.TRUE, summary.getNewlyFailingTruncated());
+		Assert.assertEquals(failing, summary.getFailed());
+	}
+
+	@Test
+	public void testNoFailuresDoNotLoadTheReport() {
+		AbstractTestResultAction action = action(10, 0, 0);
+		TestSummary summary = new TestReport(run(action)).getSummary(true);
+		Assert.assertTrue(summary.getNewlyFailing().isEmpty());
+		Mockito.verify(action, Mockito.never()).getFailedTests();
+	}
+
+	private static AbstractTestResultAction action(int total, int failed, int skipped) {
+		AbstractTestResultAction action = Mockito.mock(AbstractTestResultAction.class);
+		Mockito.when(action.getTotalCount()).thenReturn(total);
+		Mockito.when(action.getFailCount()).thenReturn(failed);
+		Mockito.when(action.getSkipCount()).thenReturn(skipped);
+		return action;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Run run(AbstractTestResultAction action) {
+		Run run = Mockito.mock(Run.class);
+		Mockito.when(run.getAction(AbstractTestResultAction.class)).thenReturn(action);
+		return run;
+	}
+
+	private static CaseResult caseResult(String name, int age) {
+		CaseResult result = Mockito.mock(CaseResult.class);
+		Mockito.when(result.getFullName()).thenReturn(name);
+		Mockito.when(result.getAge()).thenReturn(age);
+		return result;
+	}
+}
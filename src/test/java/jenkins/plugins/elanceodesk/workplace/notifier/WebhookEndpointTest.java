@@ -0,0 +1,79 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.apache.commons.httpclient.methods.PostMethod;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Testing URL parsing and host resolution of webhook endpoints.
+ *
+ */
+public class WebhookEndpointTest {
+
+	@Test
+	public void testParse() {
+		WebhookEndpoint endpoint = WebhookEndpoint.parse("https://example.com/hooks/a%20b?token=x&y=1");
+		Assert.assertTrue(endpoint.isSecure());
+		Assert.assertEquals("example.com", endpoint.getHost());
+		Assert.assertEquals(443, endpoint.getPort());
+		Assert.assertEquals("/hooks/a%20b", endpoint.getPath());
+		Assert.assertEquals("token=x&y=1", endpoint.getQuery());
+
+		endpoint = WebhookEndpoint.parse("http://localhost:8000");
+		Assert.assertFalse(endpoint.isSecure());
+		Assert.assertEquals(8000, endpoint.getPort());
+		PostMethod post = endpoint.newPost();
+		Assert.assertEquals("/", post.getPath());
+		Assert.assertNull(post.getQueryString());
+	}
+
+	@Test
+	public void testInvalidUrls() {
+		for (String url : new String[] { "", "ftp://example.com/", "example.com/hook", "http://", "http://a b/",
+				"unix:///run/consumer.sock" }) {
+			try {
+				WebhookEndpoint.parse(url);
+				Assert.fail(url);
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public void testStaleAddressesWhileRefreshing() throws Exception {
+		final List<Runnable> refreshes = new ArrayList<Runnable>();
+		DnsCache cache = new DnsCache(0, 60000, new Executor() {
+			public void execute(Runnable command) {
+				refreshes.add(command);
+			}
+		});
+		InetAddress[] first = cache.resolve("127.0.0.1");
+		Thread.sleep(2);
+		// expired, served from the cache while one refresh is scheduled
+		Assert.assertSame(first, cache.resolve("127.0.0.1"));
+		Assert.assertSame(first, cache.resolve("127.0.0.1"));
+		Assert.assertEquals(1, refreshes.size());
+
+		refreshes.get(0).run();
+		Assert.assertNotSame(first, cache.resolve("127.0.0.1"));
+	}
+}
@@ -0,0 +1,44 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Testing the phases the notify step accepts.
+ *
+ */
+public class WebhookNotifyStepTest {
+
+	@Test
+	public void testPhase() {
+		WebhookNotifyStep step = new WebhookNotifyStep();
+		Assert.assertEquals("STARTED", step.getPhase());
+		step.setPhase(" in_progress ");
+		Assert.assertEquals("IN_PROGRESS", step.getPhase());
+		step.setPhase("");
+		Assert.assertEquals("STARTED", step.getPhase());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownPhaseIsRejected() {
+		new WebhookNotifyStep().setPhase("STARTING");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPhaseOfTheBuildIsRejected() {
+		new WebhookNotifyStep().setPhase("COMPLETED");
+	}
+}
@@ -0,0 +1,153 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier;
+
+import hudson.model.FreeStyleBuild;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+
+import org.jenkinsci.plugins.workflow.steps.BodyExecution;
+import org.jenkinsci.plugins.workflow.steps.BodyExecutionCallback;
+import org.jenkinsci.plugins.workflow.steps.BodyInvoker;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+import org.powermock.reflect.Whitebox;
+
+/**
+ * Testing the stage events sent around the body of the stage step.
+ *
+ */
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(Phase.class)
+public class WebhookStageStepTest {
+
+	private Phase stageStarted;
+
+	private Phase stageCompleted;
+
+	private Phase started;
+
+	private Phase completed;
+
+	private final FreeStyleBuild run = Mockito.mock(FreeStyleBuild.class);
+
+	private final TaskListener listener = Mockito.mock(TaskListener.class);
+
+	private final StepContext context = Mockito.mock(StepContext.class);
+
+	private final BodyInvoker invoker = Mockito.mock(BodyInvoker.class);
+
+	private final BodyExecution body = Mockito.mock(BodyExecution.class);
+
+	@Before
+	public void setUp() throws Exception {
+		stageStarted = Phase.STAGE_STARTED;
+		stageCompleted = Phase.STAGE_COMPLETED;
+		started = PowerMockito.mock(Phase.class);
+		completed = PowerMockito.mock(Phase.class);
+		Whitebox.setInternalState(Phase.class, "STAGE_STARTED", started);
+		Whitebox.setInternalState(Phase.class, "STAGE_COMPLETED", completed);
+
+		Mockito.when(context.get(Run.class)).thenReturn(run);
+		Mockito.when(context.get(TaskListener.class)).thenReturn(listener);
+		Mockito.when(context.newBodyInvoker()).thenReturn(invoker);
+		Mockito.when(invoker.withCallback(Mockito.any(BodyExecutionCallback.class))).thenReturn(invoker);
+		Mockito.when(invoker.start()).thenReturn(body);
+	}
+
+	@After
+	public void tearDown() {
+		Whitebox.setInternalState(Phase.class, "STAGE_STARTED", stageStarted);
+		Whitebox.setInternalState(Phase.class, "STAGE_COMPLETED", stageCompleted);
+	}
+
+	@Test
+	public void testSuccessfulStage() throws Exception {
+		WebhookStageStep.Execution execution = execution("Build");
+		Assert.assertFalse(execution.start());
+		ArgumentCaptor<String> id = ArgumentCaptor.forClass(String.class);
+		Mockito.verify(started).handleStageAsync(Mockito.eq(run), Mockito.eq(listener), Mockito.eq("Build"),
+				(String) Mockito.isNull(), id.capture());
+		Mockito.verifyZeroInteractions(completed);
+
+		callback().onSuccess(context, "result");
+		Mockito.verify(completed).handleStageAsync(run, listener, "Build", "SUCCESS", id.getValue());
+		Mockito.verify(context).onSuccess("result");
+	}
+
+	@Test
+	public void testFailedStage() throws Exception {
+		execution("Test").start();
+		ArgumentCaptor<String> id = ArgumentCaptor.forClass(String.class);
+		Mockito.verify(started).handleStageAsync(Mockito.eq(run), Mockito.eq(listener), Mockito.eq("Test"),
+				(String) Mockito.isNull(), id.capture());
+
+		Exception error = new Exception("tests failed");
+		callback().onFailure(context, error);
+		Mockito.verify(completed).handleStageAsync(run, listener, "Test", "FAILURE", id.getValue());
+		Mockito.verify(context).onFailure(error);
+	}
+
+	@Test
+	public void testRepeatedStagesGetTheirOwnIds() throws Exception {
+		execution("Deploy").start();
+		execution("Deploy").start();
+		ArgumentCaptor<String> id = ArgumentCaptor.forClass(String.class);
+		Mockito.verify(started, Mockito.times(2)).handleStageAsync(Mockito.eq(run), Mockito.eq(listener),
+				Mockito.eq("Deploy"), (String) Mockito.isNull(), id.capture());
+		Assert.assertFalse(id.getAllValues().get(0).equals(id.getAllValues().get(1)));
+	}
+
+	@Test
+	public void testStopCancelsTheBody() throws Exception {
+		WebhookStageStep.Execution execution = execution("Build");
+		execution.start();
+		Exception cause = new InterruptedException();
+		execution.stop(cause);
+		Mockito.verify(body).cancel(cause);
+		// the stage is reported once the cancelled body calls back
+		Mockito.verifyZeroInteractions(completed);
+	}
+
+	@Test
+	public void testStopBeforeTheBodyStarted() throws Exception {
+		Exception cause = new InterruptedException();
+		execution("Build").stop(cause);
+		Mockito.verify(context).onFailure(cause);
+	}
+
+	private WebhookStageStep.Execution execution(String stage) {
+		WebhookStageStep.Execution execution = new WebhookStageStep.Execution();
+		Whitebox.setInternalState(execution, "context", context);
+		Whitebox.setInternalState(execution, "run", run);
+		Whitebox.setInternalState(execution, "listener", listener);
+		Whitebox.setInternalState(execution, "step", new WebhookStageStep(stage));
+		return execution;
+	}
+
+	private BodyExecutionCallback callback() {
+		ArgumentCaptor<BodyExecutionCallback> callback = ArgumentCaptor.forClass(BodyExecutionCallback.class);
+		Mockito.verify(invoker).withCallback(callback.capture());
+		return callback.getValue();
+	}
+}
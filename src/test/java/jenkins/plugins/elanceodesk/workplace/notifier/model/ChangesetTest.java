@@ -0,0 +1,67 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier.model;
+
+import hudson.scm.ChangeLogSet.AffectedFile;
+import hudson.scm.EditType;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Testing affected files of a changeset.
+ *
+ */
+public class ChangesetTest {
+
+	private final Gson gson = new GsonBuilder().registerTypeAdapter(Changeset.class, Changeset.WRITER).create();
+
+	@Test
+	public void testDuplicatePathsAreWrittenOnce() {
+		Changeset changeset = new Changeset("Jane", "jane", Arrays.asList(file("a.txt", EditType.ADD), file(
+				"b.txt", EditType.EDIT), file("a.txt", EditType.DELETE)));
+		Assert.assertEquals(2, changeset.getAffectedFileCount());
+		Assert.assertEquals("{\"author_display_name\":\"Jane\",\"author_id\":\"jane\","
+				+ "\"affected_files\":{\"a.txt\":\"delete\",\"b.txt\":\"edit\"}}", gson.toJson(changeset));
+	}
+
+	@Test
+	public void testDuplicatesDoNotCountAsOmitted() {
+		Changeset changeset = new Changeset("Jane", "jane", Arrays.asList(file("a.txt", EditType.ADD), file(
+				"a.txt", EditType.EDIT), file("b.txt", EditType.EDIT), file("c.txt", EditType.EDIT)), 2);
+		Assert.assertEquals(2, changeset.getAffectedFileCount());
+		Assert.assertEquals(1, changeset.getOmittedFiles());
+	}
+
+	@Test
+	public void testUnknownEditTypeKeepsItsName() {
+		Changeset changeset = new Changeset("Jane", "jane", Arrays.asList(file("a.txt", new EditType("rename",
+				"Renamed")), file("b.txt", null)));
+		Assert.assertEquals("rename", changeset.getEditType(0));
+		Assert.assertEquals("edit", changeset.getEditType(1));
+	}
+
+	private static AffectedFile file(String path, EditType editType) {
+		AffectedFile file = Mockito.mock(AffectedFile.class);
+		Mockito.when(file.getPath()).thenReturn(path);
+		Mockito.when(file.getEditType()).thenReturn(editType);
+		return file;
+	}
+}
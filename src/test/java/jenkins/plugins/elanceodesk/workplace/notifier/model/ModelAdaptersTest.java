@@ -0,0 +1,102 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jenkins.plugins.elanceodesk.workplace.notifier.model;
+
+import hudson.scm.ChangeLogSet.AffectedFile;
+import hudson.scm.EditType;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.TreeMap;
+
+import jenkins.plugins.elanceodesk.workplace.notifier.PayloadFormat;
+import jenkins.plugins.elanceodesk.workplace.notifier.Phase;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.google.gson.FieldNamingPolicy;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Testing that the hand-written writers produce the same output as field
+ * based serialization, both when streamed and when serialized by Gson.
+ *
+ */
+public class ModelAdaptersTest {
+
+	private final Gson reflective = new GsonBuilder()
+			.setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)
+			.registerTypeAdapter(Changeset.class, Changeset.WRITER).create();
+
+	private final Gson adapters = ModelAdapters.register(
+			new GsonBuilder().setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)).create();
+
+	@Test
+	public void testEmptyState() {
+		assertSameJson(new JobState());
+	}
+
+	@Test
+	public void testCompletedState() {
+		BuildState failingSince = new BuildState();
+		failingSince.setNumber(40);
+		failingSince.setFullUrl("http://jenkins/job/a/40/");
+		failingSince.setCompletionTime(1234L);
+		failingSince.setFailingSinceTime("2 hr");
+		failingSince.setChangeSet(Collections.<Changeset> emptyList());
+
+		AffectedFile file = Mockito.mock(AffectedFile.class);
+		Mockito.when(file.getPath()).thenReturn("src/<main>.java");
+		Mockito.when(file.getEditType()).thenReturn(EditType.ADD);
+
+		TreeMap<String, String> parameters = new TreeMap<String, String>();
+		parameters.put("BRANCH", "master");
+		parameters.put("EMPTY", null);
+
+		BuildState build = new BuildState();
+		build.setNumber(42);
+		build.setPhase(Phase.COMPLETED);
+		build.setStatus("FAILURE");
+		build.setUrl("job/a/42/");
+		build.setFullUrl("http://jenkins/job/a/42/");
+		build.setScm(new ScmState("git@host:a.git", "origin/master", null));
+		build.setParameters(parameters);
+		build.setChangeSet(Arrays.asList(new Changeset("Jane \"J\" Doe", "jane", Arrays.asList(file))));
+		build.setCauses(Arrays.asList("Started by user", null));
+		build.setDurationString("1 min 2 sec");
+		build.setCompletionTime(99L);
+		build.setFailingSinceBuild(failingSince);
+		build.setQueueWaitTime(5L);
+		build.setCancelled(Boolean.FALSE);
+		build.setNode("master");
+
+		JobState jobState = new JobState();
+		jobState.setName("a");
+		jobState.setUrl("job/a/");
+		jobState.setBuild(build);
+		jobState.setEventId("id");
+		assertSameJson(jobState);
+	}
+
+	private void assertSameJson(JobState jobState) {
+		String expected = reflective.toJson(jobState);
+		Assert.assertEquals(expected, adapters.toJson(jobState));
+		Assert.assertEquals(expected, new String(PayloadFormat.JSON.encode(jobState).getData(), Charset
+				.forName("UTF-8")));
+	}
+}